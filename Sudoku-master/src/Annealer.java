@@ -0,0 +1,211 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ * Simulated annealing on a primitive board.
+ *
+ * Same model as before: every box is filled with its missing digits, a move
+ * swaps two non-given cells inside one box, and the score is minus the number
+ * of distinct digits over all rows and columns (-162 when a 9x9 is solved). Row and
+ * column digit counts are kept up to date, so a move is scored from the two
+ * rows and two columns it touches and a rejected move is swapped straight back.
+ * Nothing is allocated after construction.
+ */
+public class Annealer {
+
+	static final double START_TEMPERATURE = 0.5;
+	static final double COOLING = 0.99999;
+	static final int RESTART_AFTER = 599999;
+	static final int MAX_RESTARTS = 100;
+
+	private final SudokuTopology topology;
+	private final int size;
+
+	final int values[];
+	private final boolean fixed[];
+	private final int rowCount[];   // rowCount[row * (size + 1) + v]
+	private final int colCount[];
+	private final int freeCells[][]; // non-given cells of every box with at least two of them
+	private final int missing[];
+	private final SplittableRandom random;
+	private final int goal;
+
+	private int score;
+
+	long steps; // moves proposed since construction
+
+	public Annealer(int puzzle[], long seed) {
+		topology = SudokuTopology.ofCells(puzzle.length);
+		size = topology.size;
+		values = puzzle.clone();
+		fixed = new boolean[topology.cells];
+		rowCount = new int[size * (size + 1)];
+		colCount = new int[size * (size + 1)];
+		random = new SplittableRandom(seed);
+		goal = -2 * size * size;
+		missing = new int[size];
+
+		int boxes = 0;
+		int free[][] = new int[size][];
+		for (int box = 0; box < size; box++) {
+			int count = 0;
+			for (int cell : topology.boxes[box]) {
+				fixed[cell] = values[cell] != 0;
+				if (!fixed[cell])
+					count++;
+			}
+			free[box] = new int[count];
+			count = 0;
+			for (int cell : topology.boxes[box]) {
+				if (!fixed[cell])
+					free[box][count++] = cell;
+			}
+			if (count >= 2)
+				boxes++;
+		}
+		freeCells = new int[boxes][];
+		boxes = 0;
+		for (int box = 0; box < size; box++) {
+			if (free[box].length >= 2)
+				freeCells[boxes++] = free[box];
+		}
+
+		randomize();
+	}
+
+	/* Fills every box with its missing digits in random order */
+	public void randomize() {
+		for (int box = 0; box < size; box++) {
+			long present = 0;
+			for (int cell : topology.boxes[box]) {
+				if (fixed[cell])
+					present |= 1L << values[cell];
+			}
+			int count = 0;
+			for (int v = 1; v <= size; v++) {
+				if ((present & 1L << v) == 0)
+					missing[count++] = v;
+			}
+			for (int i = count - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int tmp = missing[i];
+				missing[i] = missing[j];
+				missing[j] = tmp;
+			}
+			count = 0;
+			for (int cell : topology.boxes[box]) {
+				if (!fixed[cell])
+					values[cell] = missing[count++];
+			}
+		}
+
+		Arrays.fill(rowCount, 0);
+		Arrays.fill(colCount, 0);
+		int distinct = 0;
+		for (int cell = 0; cell < topology.cells; cell++) {
+			if (rowCount[topology.rowOf[cell] * (size + 1) + values[cell]]++ == 0)
+				distinct++;
+			if (colCount[topology.colOf[cell] * (size + 1) + values[cell]]++ == 0)
+				distinct++;
+		}
+		score = -distinct;
+	}
+
+	public int score() {
+		return score;
+	}
+
+	public boolean solved() {
+		return score == goal;
+	}
+
+	/* Whether some box has two cells to swap; if not the board stays as randomize() left it */
+	public boolean movable() {
+		return freeCells.length > 0;
+	}
+
+	/* Moves one occurrence of out to in within a unit, returns the change in distinct digits */
+	private int replace(int counts[], int unit, int out, int in) {
+		int change = 0;
+		if (--counts[unit * (size + 1) + out] == 0)
+			change--;
+		if (counts[unit * (size + 1) + in]++ == 0)
+			change++;
+		return change;
+	}
+
+	/* Swaps the values of two cells, returns the change in score */
+	private int swap(int a, int b) {
+		int va = values[a], vb = values[b];
+		int distinct = replace(rowCount, topology.rowOf[a], va, vb) + replace(colCount, topology.colOf[a], va, vb)
+				+ replace(rowCount, topology.rowOf[b], vb, va) + replace(colCount, topology.colOf[b], vb, va);
+		values[a] = vb;
+		values[b] = va;
+		return -distinct;
+	}
+
+	/* Proposes one swap at temperature t, returns true if it was accepted */
+	public boolean step(double t) {
+		if (freeCells.length == 0)
+			return false;
+		steps++;
+
+		int box[] = freeCells[random.nextInt(freeCells.length)];
+		int i = random.nextInt(box.length);
+		int j = random.nextInt(box.length - 1);
+		if (j >= i)
+			j++;
+
+		int delta = swap(box[i], box[j]);
+		if (delta <= 0 || Math.exp(-delta / t) >= random.nextDouble()) {
+			score += delta;
+			return true;
+		}
+		swap(box[i], box[j]);
+		return false;
+	}
+
+	/*
+	 * Runs up to steps moves at a fixed temperature, stops early once solved or
+	 * when the token (may be null) is cancelled.
+	 */
+	public boolean sweep(double t, int steps, CancellationToken token) {
+		for (int i = 0; i < steps && !solved(); i++) {
+			if (token != null && token.isCancelled())
+				break;
+			step(t);
+		}
+		return solved();
+	}
+
+	public boolean anneal(CancellationToken token) {
+		return anneal(token, MAX_RESTARTS);
+	}
+
+	/*
+	 * Runs the original cooling schedule until solved, restarting the temperature
+	 * every RESTART_AFTER steps. Gives up when the token (may be null) is
+	 * cancelled, once maxRestarts coolings have failed (0 for no limit, only the
+	 * token ends an unsolved run then), or at once when there is nothing to swap.
+	 */
+	public boolean anneal(CancellationToken token, int maxRestarts) {
+		if (!solved() && !movable())
+			return false;
+		double t = START_TEMPERATURE;
+		int counter = 0, restarts = 0;
+
+		while (!solved()) {
+			if (token != null && token.isCancelled())
+				return false;
+			step(t);
+			t = COOLING * t;
+			if (++counter == RESTART_AFTER) {
+				if (++restarts == maxRestarts)
+					return false;
+				counter = 0;
+				t = START_TEMPERATURE;
+			}
+		}
+		return true;
+	}
+}
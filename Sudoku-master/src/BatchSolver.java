@@ -0,0 +1,218 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/*
+ * Solves a file of one-line puzzles (81 characters, '0' or '.' for a blank).
+ *
+ * A reader thread cuts the input into chunks and hands them to a worker pool,
+ * the calling thread writes the finished chunks in input order, through one
+ * ResultWriter buffer. At most
+ * `window` chunks are in flight, so the reader blocks once the writer falls
+ * behind and memory stays bounded whatever the size of the input.
+ *
+ * Every chunk first goes through a CandidateBatch, which places the naked and
+ * hidden singles of all its puzzles together (in SIMD when the vector module
+ * is loaded). That solves the easy majority outright; only the boards it
+ * leaves open are searched, one at a time.
+ *
+ * Every input line gives one output line: the solution, "unsolvable" or "invalid".
+ *
+ * Usage: java BatchSolver <puzzles> [solutions]
+ */
+public class BatchSolver {
+
+	static final int CHUNK = 1024;
+
+	private static final Future<Chunk> END = new FutureTask<>(() -> null);
+
+	private final int workers;
+	private final int window;
+
+	private final ThreadLocal<BitBoard> boards = ThreadLocal.withInitial(BitBoard::new);
+	private final ThreadLocal<CandidateBatch> singles = ThreadLocal.withInitial(() -> CandidateBatch.create(CHUNK));
+	private final ThreadLocal<BitSolver> solvers = ThreadLocal.withInitial(BitSolver::new);
+
+	public BatchSolver(int workers) {
+		this.workers = workers;
+		this.window = workers * 4;
+	}
+
+	private static final byte INVALID[] = "invalid\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte UNSOLVABLE[] = "unsolvable\n".getBytes(StandardCharsets.US_ASCII);
+
+	static class Chunk {
+		final byte text[];
+		final int length;
+		final int puzzles;
+		final int solved;
+
+		Chunk(byte text[], int length, int puzzles, int solved) {
+			this.text = text;
+			this.length = length;
+			this.puzzles = puzzles;
+			this.solved = solved;
+		}
+	}
+
+	static class Stats {
+		long puzzles;
+		long solved;
+		long elapsedNanos;
+
+		double puzzlesPerSecond() {
+			return elapsedNanos == 0 ? 0 : puzzles * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return puzzles + " puzzles, " + solved + " solved in " + elapsedNanos / 1000000 + " ms ("
+					+ (long) puzzlesPerSecond() + " puzzles/s)";
+		}
+	}
+
+	/* Values of a line of 81 characters, '0' or '.' for a blank, then only whitespace; false if it is not one */
+	static boolean parse(CharSequence line, int values[]) {
+		if (BitBoard.trimmedLength(line) != values.length)
+			return false;
+		for (int i = 0; i < values.length; i++) {
+			char ch = line.charAt(i);
+			int val = ch == '.' ? 0 : ch - '0';
+			if (val < 0 || val > 9)
+				return false;
+			values[i] = val;
+		}
+		return true;
+	}
+
+	private Chunk solveChunk(String lines[], int count) {
+		BitBoard b = boards.get();
+		CandidateBatch batch = singles.get();
+		BitSolver solver = solvers.get();
+		int values[] = new int[b.cells];
+		boolean valid[] = new boolean[count];
+
+		batch.clear();
+		for (int i = 0; i < count; i++) {
+			valid[i] = parse(lines[i], values) && batch.load(i, values);
+		}
+		batch.propagate();
+
+		// every line fits the widest of a solution and "unsolvable"
+		byte text[] = new byte[count * (Math.max(SudokuTopology.STANDARD.cells, UNSOLVABLE.length) + 1)];
+		int length = 0;
+		int solved = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (!valid[i]) {
+				System.arraycopy(INVALID, 0, text, length, INVALID.length);
+				length += INVALID.length;
+				continue;
+			}
+			batch.values(i, values);
+			if (batch.isDead(i) || !b.load(values)) {
+				System.arraycopy(UNSOLVABLE, 0, text, length, UNSOLVABLE.length);
+				length += UNSOLVABLE.length;
+			} else if (batch.isSolved(i) || solver.solve(b)) {
+				length = b.appendTo(text, length);
+				text[length++] = '\n';
+				solved++;
+			} else {
+				System.arraycopy(UNSOLVABLE, 0, text, length, UNSOLVABLE.length);
+				length += UNSOLVABLE.length;
+			}
+		}
+		return new Chunk(text, length, count, solved);
+	}
+
+	public Stats run(BufferedReader in, ResultWriter out) throws IOException, InterruptedException {
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		BlockingQueue<Future<Chunk>> pending = new ArrayBlockingQueue<>(window);
+		IOException readFailure[] = new IOException[1];
+
+		Thread reader = new Thread(() -> {
+			try {
+				String lines[] = new String[CHUNK];
+				int count = 0;
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.isEmpty())
+						continue;
+					lines[count++] = line;
+					if (count == CHUNK) {
+						pending.put(pool.submit(task(lines, count)));
+						lines = new String[CHUNK];
+						count = 0;
+					}
+				}
+				if (count > 0)
+					pending.put(pool.submit(task(lines, count)));
+			} catch (IOException e) {
+				readFailure[0] = e;
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				pending.put(END);
+			} catch (InterruptedException e) {
+				// writer is gone already
+			}
+		}, "batch-reader");
+		reader.setDaemon(true);
+
+		Stats stats = new Stats();
+		long start = System.nanoTime();
+		reader.start();
+		try {
+			Future<Chunk> next;
+			while ((next = pending.take()) != END) {
+				Chunk chunk = next.get();
+				out.write(chunk.text, 0, chunk.length);
+				stats.puzzles += chunk.puzzles;
+				stats.solved += chunk.solved;
+			}
+			out.flush();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			reader.interrupt();
+			pool.shutdownNow();
+		}
+		stats.elapsedNanos = System.nanoTime() - start;
+
+		if (readFailure[0] != null)
+			throw readFailure[0];
+		return stats;
+	}
+
+	private Callable<Chunk> task(String lines[], int count) {
+		return () -> solveChunk(lines, count);
+	}
+
+	public static void main(String ar[]) throws Exception {
+
+		if (ar.length < 1) {
+			System.err.println("usage: java BatchSolver <puzzles> [solutions]");
+			return;
+		}
+
+		BatchSolver batch = new BatchSolver(Runtime.getRuntime().availableProcessors());
+
+		try (BufferedReader in = Files.newBufferedReader(Paths.get(ar[0]), StandardCharsets.US_ASCII);
+				ResultWriter out = ar.length > 1 ? ResultWriter.toFile(Paths.get(ar[1]), 0) : ResultWriter.toStdout(0)) {
+			Stats stats = batch.run(in, out);
+			System.err.println(stats);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Primitive board state used by the bitmask solvers.
+ *
+ * Every cell is an index 0..cells-1 (row * size + col). values[] holds the
+ * assigned value (0 = blank) and domains[] holds the candidates as a long
+ * bitmask, bit v-1 set means v is still possible, which covers boards up to
+ * 64x64. Domain removals are pushed onto a preallocated trail, so a search
+ * takes a mark() before a decision and undo() puts every domain back the way
+ * it was without copying anything.
+ */
+class BitBoard {
+
+	final SudokuTopology topology;
+	final int size;
+	final int cells;
+	final long all;
+	private final int peers[][];
+
+	final int values[];
+	final long domains[];
+
+	// (cell, removed bits) pairs. Along one search path a cell can lose each bit
+	// only once, so cells * size entries are enough for any depth.
+	private final int trailCells[];
+	private final long trailBits[];
+	private int trailSize;
+
+	// AC-3 worklist: a ring of cells whose domain became a singleton, with a
+	// membership bitset so a cell is never queued twice
+	private final int queue[];
+	private final long queued[];
+	private int queueHead;
+	private int queueSize;
+
+	// where revisions and wipeouts are counted when SearchStats.ENABLED, set by the solver
+	SearchStats stats;
+
+	public BitBoard() {
+		this(SudokuTopology.STANDARD);
+	}
+
+	public BitBoard(SudokuTopology topology) {
+		if (topology.size > 64)
+			throw new IllegalArgumentException("domains hold at most 64 values, board has " + topology.size);
+		this.topology = topology;
+		this.size = topology.size;
+		this.cells = topology.cells;
+		this.all = size == 64 ? -1L : (1L << size) - 1;
+		this.peers = topology.peers;
+		values = new int[cells];
+		domains = new long[cells];
+		trailCells = new int[cells * size];
+		trailBits = new long[cells * size];
+		queue = new int[cells];
+		queued = new long[(cells + 63) / 64];
+	}
+
+	/* Independent copy of values and domains with an empty trail */
+	public BitBoard(BitBoard other) {
+		this(other.topology);
+		System.arraycopy(other.values, 0, values, 0, cells);
+		System.arraycopy(other.domains, 0, domains, 0, cells);
+	}
+
+	public BitBoard(BoardState state) {
+		this(state.topology);
+		restore(state);
+	}
+
+	public BitBoard(Sudoku s) {
+		this(s.topology);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				Cell cell = s.board[row][col];
+				int index = row * size + col;
+				values[index] = cell.val;
+				long mask = 0;
+				for (int val : cell.domain)
+					mask |= 1L << (val - 1);
+				domains[index] = mask;
+			}
+		}
+	}
+
+	/* Values and domains as they are now, see restore() */
+	public BoardState snapshot() {
+		return new BoardState(topology, values, domains);
+	}
+
+	/* Back to a snapshot of a board of the same size, with an empty trail */
+	public void restore(BoardState state) {
+		if (state.topology != topology)
+			throw new IllegalArgumentException("snapshot of a " + state.topology.size + "x" + state.topology.size
+					+ " board, this one is " + size + "x" + size);
+		state.copyTo(values, domains);
+		trailSize = 0;
+		clearQueue();
+	}
+
+	/*
+	 * Loads a puzzle written as one line of 81 characters, '0' or '.' for a blank,
+	 * and nothing after them but whitespace.
+	 * Returns false if the line is malformed or two givens clash.
+	 */
+	public boolean load(CharSequence line) {
+		if (size > 9 || trimmedLength(line) != cells)
+			return false;
+
+		for (int i = 0; i < cells; i++) {
+			char ch = line.charAt(i);
+			int val = ch == '.' ? 0 : ch - '0';
+			if (val < 0 || val > size)
+				return false;
+			values[i] = val;
+		}
+		return loadGivens();
+	}
+
+	/* Length of line without trailing whitespace, so a "\r" or a trailing blank is no extra cell */
+	static int trimmedLength(CharSequence line) {
+		int length = line.length();
+		while (length > 0 && Character.isWhitespace(line.charAt(length - 1)))
+			length--;
+		return length;
+	}
+
+	/* Loads the values in row-major order, 0 = blank. Returns false if two givens clash */
+	public boolean load(int puzzle[]) {
+		for (int i = 0; i < cells; i++) {
+			if (puzzle[i] < 0 || puzzle[i] > size)
+				return false;
+			values[i] = puzzle[i];
+		}
+		return loadGivens();
+	}
+
+	private boolean loadGivens() {
+		trailSize = 0;
+		for (int i = 0; i < cells; i++) {
+			domains[i] = all;
+		}
+
+		// Remove the givens from the domains of their blank peers
+		for (int i = 0; i < cells; i++) {
+			if (values[i] == 0)
+				continue;
+			long bit = 1L << (values[i] - 1);
+			domains[i] = bit;
+			for (int peer : peers[i]) {
+				if (values[peer] == values[i])
+					return false;
+				if (values[peer] == 0)
+					domains[peer] &= ~bit;
+			}
+		}
+		return true;
+	}
+
+	public int mark() {
+		return trailSize;
+	}
+
+	/* Roll every domain removal made after mark back in */
+	public void undo(int mark) {
+		while (trailSize > mark) {
+			trailSize--;
+			domains[trailCells[trailSize]] |= trailBits[trailSize];
+		}
+	}
+
+	/*
+	 * Removes bit from the domain of every unassigned peer of cell.
+	 * Returns false on a domain wipeout, the removals made so far stay on the trail.
+	 */
+	public boolean eliminateFromPeers(int cell, long bit) {
+		for (int peer : peers[cell]) {
+			if (values[peer] != 0)
+				continue;
+			if ((domains[peer] & bit) != 0) {
+				domains[peer] &= ~bit;
+				push(peer, bit);
+			}
+			if (domains[peer] == 0) {
+				if (SearchStats.ENABLED && stats != null)
+					stats.wipeouts++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Removes bits from the domain of cell on the trail and queues the cell for
+	 * propagate() once a single value is left. Returns false on a wipeout.
+	 */
+	public boolean eliminate(int cell, long bits) {
+		long removed = domains[cell] & bits;
+		if (removed == 0)
+			return true;
+		domains[cell] &= ~removed;
+		push(cell, removed);
+
+		long left = domains[cell];
+		if (left == 0) {
+			if (SearchStats.ENABLED && stats != null)
+				stats.wipeouts++;
+			clearQueue();
+			return false;
+		}
+		if ((left & (left - 1)) == 0)
+			enqueue(cell);
+		return true;
+	}
+
+	private void push(int cell, long bits) {
+		trailCells[trailSize] = cell;
+		trailBits[trailSize++] = bits;
+	}
+
+	private void enqueue(int cell) {
+		if ((queued[cell >>> 6] & 1L << cell) != 0)
+			return;
+		queued[cell >>> 6] |= 1L << cell;
+		queue[(queueHead + queueSize++) % cells] = cell;
+	}
+
+	private int dequeue() {
+		int cell = queue[queueHead];
+		queueHead = (queueHead + 1) % cells;
+		queueSize--;
+		queued[cell >>> 6] &= ~(1L << cell);
+		return cell;
+	}
+
+	/* Drops whatever is still queued, for callers that give up on a board */
+	void clearQueue() {
+		while (queueSize > 0)
+			dequeue();
+	}
+
+	/*
+	 * Assigns val to cell, narrowing its domain on the trail, and runs AC-3 from it.
+	 * Returns false on a domain wipeout.
+	 */
+	public boolean assign(int cell, int val) {
+		long bit = 1L << (val - 1);
+		values[cell] = val;
+		if ((domains[cell] & bit) == 0)
+			return false;
+		if (domains[cell] != bit) {
+			push(cell, domains[cell] & ~bit);
+			domains[cell] = bit;
+		}
+		enqueue(cell);
+		return propagate();
+	}
+
+	/* Runs AC-3 from every cell that already has a single value left */
+	public boolean propagateAll() {
+		for (int cell = 0; cell < cells; cell++) {
+			if (Long.bitCount(domains[cell]) == 1)
+				enqueue(cell);
+		}
+		return propagate();
+	}
+
+	/*
+	 * AC-3 for the all-different arcs of a Sudoku: an arc (x, y) can only remove
+	 * a value from x once y is down to that single value. So the worklist holds
+	 * singleton cells, and revising a cell removes its value from every peer,
+	 * queueing any peer that becomes a singleton in turn.
+	 */
+	public boolean propagate() {
+		while (queueSize > 0) {
+			int cell = dequeue();
+			long bit = domains[cell];
+
+			for (int peer : peers[cell]) {
+				if ((domains[peer] & bit) == 0)
+					continue;
+				domains[peer] &= ~bit;
+				push(peer, bit);
+				if (SearchStats.ENABLED && stats != null)
+					stats.revisions++;
+
+				long left = domains[peer];
+				if (left == 0) {
+					if (SearchStats.ENABLED && stats != null)
+						stats.wipeouts++;
+					clearQueue();
+					return false;
+				}
+				if ((left & (left - 1)) == 0)
+					enqueue(peer);
+			}
+		}
+		return true;
+	}
+
+	/* Appends the values of a 9x9 board as one line of 81 digits */
+	public void appendTo(StringBuilder sb) {
+		for (int i = 0; i < cells; i++) {
+			sb.append((char) ('0' + values[i]));
+		}
+	}
+
+	/* Writes the values as ASCII digits from pos, returns the position after them */
+	public int appendTo(byte buf[], int pos) {
+		for (int i = 0; i < cells; i++) {
+			buf[pos++] = (byte) ('0' + values[i]);
+		}
+		return pos;
+	}
+
+	/* Copies the assigned values back onto the Sudoku cells */
+	public void copyTo(Sudoku s) {
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				s.board[row][col].val = values[row * size + col];
+			}
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Search algorithms over a BitBoard. Nothing in here allocates per search node:
+ * candidates are iterated as bits and backtracking unwinds the board's trail.
+ */
+public class BitSolver {
+
+	private final CancellationToken token;
+
+	// Search statistics since construction or the last resetStats()
+	final SearchStats stats;
+
+	public BitSolver() {
+		this(null);
+	}
+
+	public BitSolver(CancellationToken token) {
+		this(token, new SearchStats());
+	}
+
+	/* Counts into stats, which can be shared with other solvers of the same thread */
+	public BitSolver(CancellationToken token, SearchStats stats) {
+		this.token = token;
+		this.stats = stats;
+	}
+
+	private boolean cancelled() {
+		return token != null && token.isCancelled();
+	}
+
+	public void resetStats() {
+		stats.reset();
+	}
+
+	/*
+	 * Backtracking with forward checking. Cells are assigned in the given order and
+	 * values are tried lowest first, which is the order SudokuAlgorithms.forwardChecking
+	 * walks its HashSet domains in, so both find the same solution.
+	 */
+	public boolean forwardChecking(BitBoard b, int order[], int depth) {
+
+		if (depth == order.length) {
+			return true;
+		}
+		if (cancelled()) {
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED) {
+			b.stats = stats;
+			stats.descend();
+		}
+
+		int cell = order[depth];
+		long candidates = b.domains[cell];
+
+		while (candidates != 0) {
+			long bit = candidates & -candidates;
+			candidates ^= bit;
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+
+			int mark = b.mark();
+			b.values[cell] = Long.numberOfTrailingZeros(bit) + 1;
+
+			if (b.eliminateFromPeers(cell, bit) && forwardChecking(b, order, depth + 1)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
+				return true;
+			}
+			// domain wipeout here or further down, rollback
+			b.undo(mark);
+			stats.backtracks++;
+		}
+		b.values[cell] = 0;
+		if (SearchStats.ENABLED)
+			stats.ascend();
+		return false;
+	}
+
+	/*
+	 * Forward checking that branches on the blank cell with the fewest candidates.
+	 * This is the general purpose entry point for boards loaded from puzzle lines.
+	 */
+	public boolean solve(BitBoard b) {
+
+		int cell = findMRVCell(b);
+
+		if (cell < 0) {
+			return true;
+		}
+		if (cancelled()) {
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED) {
+			b.stats = stats;
+			stats.descend();
+		}
+
+		long candidates = b.domains[cell];
+
+		while (candidates != 0) {
+			long bit = candidates & -candidates;
+			candidates ^= bit;
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+
+			int mark = b.mark();
+			b.values[cell] = Long.numberOfTrailingZeros(bit) + 1;
+
+			if (b.eliminateFromPeers(cell, bit) && solve(b)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
+				return true;
+			}
+			b.undo(mark);
+			stats.backtracks++;
+		}
+		b.values[cell] = 0;
+		if (SearchStats.ENABLED)
+			stats.ascend();
+		return false;
+	}
+
+	/*
+	 * Maintained arc consistency: every assignment is followed by AC-3 over the
+	 * peers, all of it on the trail, so backtracking undoes the propagation too.
+	 * Expects a board that was already made arc consistent with propagateAll().
+	 */
+	public boolean mac(BitBoard b) {
+
+		int cell = findMRVCell(b);
+
+		if (cell < 0) {
+			return true;
+		}
+		if (cancelled()) {
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED) {
+			b.stats = stats;
+			stats.descend();
+		}
+
+		long candidates = b.domains[cell];
+
+		while (candidates != 0) {
+			long bit = candidates & -candidates;
+			candidates ^= bit;
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+
+			int mark = b.mark();
+			if (b.assign(cell, Long.numberOfTrailingZeros(bit) + 1) && mac(b)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
+				return true;
+			}
+			b.undo(mark);
+			stats.backtracks++;
+		}
+		b.values[cell] = 0;
+		if (SearchStats.ENABLED)
+			stats.ascend();
+		return false;
+	}
+
+	/*
+	 * MAC that also runs the human techniques after every branching assignment.
+	 * Their removals sit on the same trail, so a backtrack undoes them too. A cell
+	 * down to one value was already propagated, so it skips them.
+	 */
+	public boolean mac(BitBoard b, HumanTechniques techniques) {
+
+		int cell = findMRVCell(b);
+
+		if (cell < 0) {
+			return true;
+		}
+		if (cancelled()) {
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED) {
+			b.stats = stats;
+			stats.descend();
+		}
+
+		long candidates = b.domains[cell];
+		boolean branch = Long.bitCount(candidates) > 1;
+
+		while (candidates != 0) {
+			long bit = candidates & -candidates;
+			candidates ^= bit;
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+
+			int mark = b.mark();
+			if (b.assign(cell, Long.numberOfTrailingZeros(bit) + 1) && (!branch || techniques.apply(b))
+					&& mac(b, techniques)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
+				return true;
+			}
+			b.undo(mark);
+			stats.backtracks++;
+		}
+		b.values[cell] = 0;
+		if (SearchStats.ENABLED)
+			stats.ascend();
+		return false;
+	}
+
+	/*
+	 * Counts solutions with the MAC search, stopping once limit have been found;
+	 * a limit of 2 is enough to tell a unique puzzle from an ambiguous one.
+	 * If firstSolution is not null the first solution found is copied into it.
+	 * The board is left as it was given.
+	 *
+	 * Returns -1 if the token stopped the count before it reached limit or ran
+	 * out of branches: what was counted by then says nothing, 0 included.
+	 */
+	public int countSolutions(BitBoard b, int limit, int firstSolution[]) {
+		int mark = b.mark();
+		int found = 0;
+		if (b.propagateAll()) {
+			found = count(b, limit, 0, firstSolution);
+			if (found < limit && cancelled())
+				found = -1;
+		}
+		b.undo(mark);
+		return found;
+	}
+
+	private int count(BitBoard b, int limit, int foundSoFar, int firstSolution[]) {
+
+		int cell = findMRVCell(b);
+
+		if (cell < 0) {
+			if (foundSoFar == 0 && firstSolution != null)
+				System.arraycopy(b.values, 0, firstSolution, 0, b.cells);
+			return 1;
+		}
+		if (cancelled()) {
+			return 0;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED) {
+			b.stats = stats;
+			stats.descend();
+		}
+
+		int found = 0;
+		long candidates = b.domains[cell];
+
+		while (candidates != 0 && foundSoFar + found < limit) {
+			long bit = candidates & -candidates;
+			candidates ^= bit;
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+
+			int mark = b.mark();
+			int below = 0;
+			if (b.assign(cell, Long.numberOfTrailingZeros(bit) + 1)) {
+				below = count(b, limit, foundSoFar + found, firstSolution);
+			}
+			b.undo(mark);
+			if (below == 0)
+				stats.backtracks++;
+			found += below;
+		}
+		b.values[cell] = 0;
+		if (SearchStats.ENABLED)
+			stats.ascend();
+		return found;
+	}
+
+	/* Blank cell with the fewest candidates, -1 when the board is complete */
+	static int findMRVCell(BitBoard b) {
+
+		int cell = -1;
+		int minimumRemainingValues = Integer.MAX_VALUE;
+
+		for (int i = 0; i < b.cells; i++) {
+			if (b.values[i] != 0)
+				continue;
+			int count = Long.bitCount(b.domains[i]);
+			if (count < minimumRemainingValues) {
+				minimumRemainingValues = count;
+				cell = i;
+				if (count <= 1)
+					break;
+			}
+		}
+		return cell;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Immutable snapshot of a board: the values and the candidate masks of every
+ * cell, bit v-1 set when v is possible. Taking one or restoring it is a copy
+ * of two primitive arrays, and since nothing in it ever changes after the
+ * constructor it can be handed to other threads as it is.
+ */
+public final class BoardState {
+
+	final SudokuTopology topology;
+	private final int values[];
+	private final long domains[];
+
+	BoardState(SudokuTopology topology, int values[], long domains[]) {
+		this.topology = topology;
+		this.values = values.clone();
+		this.domains = domains.clone();
+	}
+
+	/* Snapshot of the values and the current domains of s */
+	public static BoardState of(Sudoku s) {
+		int values[] = new int[s.topology.cells];
+		long domains[] = new long[s.topology.cells];
+		for (int row = 0; row < s.size; row++) {
+			for (int col = 0; col < s.size; col++) {
+				Cell cell = s.board[row][col];
+				values[row * s.size + col] = cell.val;
+				long mask = 0;
+				for (int val : cell.domain)
+					mask |= 1L << (val - 1);
+				domains[row * s.size + col] = mask;
+			}
+		}
+		return new BoardState(s.topology, values, domains);
+	}
+
+	public int value(int cell) {
+		return values[cell];
+	}
+
+	public long domain(int cell) {
+		return domains[cell];
+	}
+
+	/* Values in row-major order, 0 = blank; a copy */
+	public int[] values() {
+		return values.clone();
+	}
+
+	void copyTo(int values[], long domains[]) {
+		System.arraycopy(this.values, 0, values, 0, values.length);
+		System.arraycopy(this.domains, 0, domains, 0, domains.length);
+	}
+}
@@ -0,0 +1,21 @@
+/*
+ * Flag shared between a caller and solvers running on other threads. Solvers
+ * check it once per search node (or annealing step) and give up when it is set.
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/* Whether a solver was told to stop, read after the solve without counting as a check */
+	public boolean stopped() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Naked and hidden singles for a batch of 9x9 boards at once, laid out as
+ * structure of arrays so one pass over a cell covers every board.
+ *
+ * Every unit mask and cell is a short per board: rows[r * lanes + b] holds the
+ * digits placed in row r of board b as bits (bit v-1 for v), bits[] holds each
+ * cell's digit the same way, 0 for a blank. Candidates are the complement of
+ * row | column | box. A board whose blank cell runs out of candidates, or whose
+ * unit has a digit with nowhere to go, is marked dead: it has no solution.
+ *
+ * propagate() repeats both rules until no board changes. What they leave open
+ * is for a per-board search. The sweeps come in two flavours, VectorCandidateBatch
+ * on jdk.incubator.vector and ScalarCandidateBatch, and create() picks the
+ * vector one whenever the module is there (java --add-modules jdk.incubator.vector),
+ * unless -Dsudoku.vector=false.
+ */
+abstract class CandidateBatch {
+
+	static final SudokuTopology TOPOLOGY = SudokuTopology.STANDARD;
+	static final int SIZE = TOPOLOGY.size;
+	static final int CELLS = TOPOLOGY.cells;
+	static final short ALL = (short) ((1 << SIZE) - 1);
+
+	final int lanes;
+	final short rows[];
+	final short cols[];
+	final short boxes[];
+	final short bits[];
+	final short dead[]; // -1 for a board without solution
+
+	CandidateBatch(int lanes) {
+		this.lanes = lanes;
+		rows = new short[SIZE * lanes];
+		cols = new short[SIZE * lanes];
+		boxes = new short[SIZE * lanes];
+		bits = new short[CELLS * lanes];
+		dead = new short[lanes];
+	}
+
+	/* Vector sweeps when the incubator module is loaded, scalar ones otherwise */
+	static CandidateBatch create(int boards) {
+		if (!"false".equals(System.getProperty("sudoku.vector"))) {
+			try {
+				return (CandidateBatch) Class.forName("VectorCandidateBatch").getDeclaredConstructor(int.class)
+						.newInstance(boards);
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// jdk.incubator.vector is not there
+			}
+		}
+		return new ScalarCandidateBatch(boards);
+	}
+
+	/* Boards the batch holds, which may be rounded up from what was asked */
+	int capacity() {
+		return lanes;
+	}
+
+	/* Empties every board */
+	void clear() {
+		java.util.Arrays.fill(rows, (short) 0);
+		java.util.Arrays.fill(cols, (short) 0);
+		java.util.Arrays.fill(boxes, (short) 0);
+		java.util.Arrays.fill(bits, (short) 0);
+		java.util.Arrays.fill(dead, (short) 0);
+	}
+
+	/*
+	 * Puts the givens (81 values, 0 = blank) on board b, which must be empty.
+	 * Returns false if a value is out of range or two givens clash.
+	 */
+	boolean load(int b, int values[]) {
+		for (int i = 0; i < CELLS; i++) {
+			int v = values[i];
+			if (v == 0)
+				continue;
+			if (v < 0 || v > SIZE)
+				return false;
+			short bit = (short) (1 << (v - 1));
+			int row = TOPOLOGY.rowOf[i] * lanes + b, col = TOPOLOGY.colOf[i] * lanes + b,
+					box = TOPOLOGY.boxOf[i] * lanes + b;
+			if (((rows[row] | cols[col] | boxes[box]) & bit) != 0)
+				return false;
+			rows[row] |= bit;
+			cols[col] |= bit;
+			boxes[box] |= bit;
+			bits[i * lanes + b] = bit;
+		}
+		return true;
+	}
+
+	/* Singles until no board changes, the number of passes it took */
+	int propagate() {
+		int passes = 0;
+		boolean changed;
+		do {
+			changed = nakedSingles();
+			changed |= hiddenSingles();
+			passes++;
+		} while (changed);
+		return passes;
+	}
+
+	/* Every blank with one candidate gets it, returns whether any board changed */
+	abstract boolean nakedSingles();
+
+	/* Every digit with one place left in a unit goes there */
+	abstract boolean hiddenSingles();
+
+	boolean isDead(int b) {
+		return dead[b] != 0;
+	}
+
+	boolean isSolved(int b) {
+		if (dead[b] != 0)
+			return false;
+		for (int i = 0; i < CELLS; i++) {
+			if (bits[i * lanes + b] == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/* Board b as values, 0 for the cells still open */
+	void values(int b, int values[]) {
+		for (int i = 0; i < CELLS; i++) {
+			int bit = bits[i * lanes + b];
+			values[i] = bit == 0 ? 0 : Integer.numberOfTrailingZeros(bit) + 1;
+		}
+	}
+}
@@ -0,0 +1,338 @@
+import java.util.Arrays;
+
+/*
+ * Reduces a 9x9 puzzle to a canonical form under the Sudoku symmetry group:
+ * transposition, band and stack permutations, row permutations within a band,
+ * column permutations within a stack, and digit relabeling.
+ *
+ * Every row gets a signature that no column permutation or relabeling can
+ * change: its number of givens, how they spread over the stacks, and how many
+ * givens the columns they sit in hold. A band's signature combines those of
+ * its rows, and columns and stacks get theirs the same way. The canonical
+ * layouts are the ones that put bands in ascending signature order and the
+ * rows of a band too, likewise stacks and columns, and take the orientation
+ * with the smaller signature; only ties between equal signatures are left to
+ * search. Since the signatures come along with any symmetry, isomorphic
+ * puzzles get the same set of layouts.
+ *
+ * Among those the canonical form is the lexicographically smallest 81 values,
+ * blanks being 0 and digits relabeled 1, 2, 3... in order of first
+ * appearance (which is the smallest relabeling of any fixed layout). It is
+ * found by a depth first search over the layout, one output cell at a time,
+ * pruned against the best string found so far: the first row picks the
+ * transposition, the source row and the column order, the remaining rows only
+ * pick a source row. Whenever a branch goes below the best string its values
+ * overwrite it, so every live branch matches the best prefix.
+ *
+ * An instance keeps scratch arrays and is not thread safe.
+ */
+class Canonicalizer {
+
+	static final int SIZE = 9;
+	static final int CELLS = SIZE * SIZE;
+	static final int ORDER = 3;
+
+	private final int oriented[][] = new int[2][CELLS]; // as given, transposed
+	private int grid[];
+
+	// signatures of the lines and their bands for each orientation: rows of
+	// orientation 0 are the columns of orientation 1
+	private final long lineKey[][] = new long[2][SIZE];
+	private final long bandKey[][] = new long[2][ORDER];
+	private long rowKey[], colKey[], rowBandKey[], colBandKey[];
+
+	private final int rowOrder[] = new int[SIZE];      // output row i comes from grid row rowOrder[i]
+	private final int colOrder[] = new int[SIZE];
+	private final boolean rowUsed[] = new boolean[SIZE];
+	private final boolean colUsed[] = new boolean[SIZE];
+	private final boolean bandUsed[] = new boolean[ORDER];
+	private final boolean stackUsed[] = new boolean[ORDER];
+	private final int label[] = new int[SIZE + 1];     // digit -> canonical digit, 0 while unseen
+	private int labels;
+	private int transposed;
+
+	private final int best[] = new int[CELLS];
+	private int version;          // bumped whenever best is overwritten
+	private int recordedVersion;
+	private Transform recorded;
+
+	/*
+	 * Where the canonical form came from: canonical cell (i, j) is cell
+	 * (rowOrder[i], colOrder[j]) of the puzzle, transposed first if transpose is
+	 * set, and canonical digit label[d] stands for digit d.
+	 */
+	static final class Transform {
+		final boolean transpose;
+		final int rowOrder[];
+		final int colOrder[];
+		final int label[];   // complete: digits that never appear get the labels left over
+		final int unlabel[]; // canonical digit -> digit
+
+		Transform(boolean transpose, int rowOrder[], int colOrder[], int label[]) {
+			this.transpose = transpose;
+			this.rowOrder = rowOrder;
+			this.colOrder = colOrder;
+			this.label = label;
+			this.unlabel = new int[SIZE + 1];
+			for (int d = 1; d <= SIZE; d++)
+				unlabel[label[d]] = d;
+		}
+
+		/* Index in the original puzzle of canonical cell (i, j) */
+		int source(int i, int j) {
+			int row = rowOrder[i], col = colOrder[j];
+			return transpose ? col * SIZE + row : row * SIZE + col;
+		}
+
+		int[] toCanonical(int values[]) {
+			int canonical[] = new int[CELLS];
+			for (int i = 0; i < SIZE; i++) {
+				for (int j = 0; j < SIZE; j++)
+					canonical[i * SIZE + j] = label[values[source(i, j)]];
+			}
+			return canonical;
+		}
+
+		int[] fromCanonical(int canonical[]) {
+			int values[] = new int[CELLS];
+			for (int i = 0; i < SIZE; i++) {
+				for (int j = 0; j < SIZE; j++)
+					values[source(i, j)] = unlabel[canonical[i * SIZE + j]];
+			}
+			return values;
+		}
+	}
+
+	/* Canonical values of the puzzle, transform() then tells how to map back */
+	public int[] canonicalize(int puzzle[]) {
+		for (int row = 0; row < SIZE; row++) {
+			for (int col = 0; col < SIZE; col++) {
+				oriented[0][row * SIZE + col] = puzzle[row * SIZE + col];
+				oriented[1][col * SIZE + row] = puzzle[row * SIZE + col];
+			}
+		}
+		Arrays.fill(best, Integer.MAX_VALUE);
+		version = 0;
+		recordedVersion = -1;
+
+		for (int o = 0; o < 2; o++)
+			signatures(oriented[o], lineKey[o], bandKey[o]);
+		long layout[] = { layoutKey(bandKey[0]), layoutKey(bandKey[1]) };
+
+		for (transposed = 0; transposed < 2; transposed++) {
+			if (layout[transposed] > layout[1 - transposed])
+				continue;
+			grid = oriented[transposed];
+			rowKey = lineKey[transposed];
+			colKey = lineKey[1 - transposed];
+			rowBandKey = bandKey[transposed];
+			colBandKey = bandKey[1 - transposed];
+			for (int row = 0; row < SIZE; row++) {
+				if (!firstChoice(row, rowUsed, bandUsed, rowKey, rowBandKey))
+					continue;
+				rowOrder[0] = row;
+				rowUsed[row] = true;
+				bandUsed[row / ORDER] = true;
+				firstRow(0);
+				bandUsed[row / ORDER] = false;
+				rowUsed[row] = false;
+			}
+		}
+		return best.clone();
+	}
+
+	/*
+	 * Signatures of the rows of grid and of its bands. A row's is its number
+	 * of givens, then how many stacks hold 0, 1, 2 or 3 of them, then how many
+	 * of them sit in a column of 1..9 givens; all of it survives column
+	 * permutations and relabeling. A band's mixes its row signatures in
+	 * ascending order, so it survives row permutations within the band as well.
+	 * Equal signatures may still hide different lines, that only costs search.
+	 */
+	private static void signatures(int grid[], long lines[], long bands[]) {
+		int colCount[] = new int[SIZE];
+		for (int i = 0; i < CELLS; i++) {
+			if (grid[i] != 0)
+				colCount[i % SIZE]++;
+		}
+		for (int row = 0; row < SIZE; row++) {
+			long count = 0, stacks = 0, columns = 0;
+			for (int stack = 0; stack < ORDER; stack++) {
+				int inStack = 0;
+				for (int col = stack * ORDER; col < stack * ORDER + ORDER; col++) {
+					if (grid[row * SIZE + col] == 0)
+						continue;
+					inStack++;
+					columns += 1L << 4 * (colCount[col] - 1);
+				}
+				count += inStack;
+				stacks += 1L << 2 * inStack;
+			}
+			lines[row] = count << 48 | stacks << 36 | columns;
+		}
+		for (int band = 0; band < ORDER; band++)
+			bands[band] = mix(lines, band * ORDER);
+	}
+
+	/* The three values from at, ascending, folded into one */
+	private static long mix(long values[], int at) {
+		long a = values[at], b = values[at + 1], c = values[at + 2], t;
+		if (a > b) { t = a; a = b; b = t; }
+		if (b > c) { t = b; b = c; c = t; }
+		if (a > b) { t = a; a = b; b = t; }
+		long h = a;
+		h = h * 0x9E3779B97F4A7C15L + b;
+		h = h * 0x9E3779B97F4A7C15L + c;
+		return h >>> 1; // non-negative, so comparisons order them the same everywhere
+	}
+
+	/* Signature of a whole orientation, from its band signatures */
+	private static long layoutKey(long bands[]) {
+		return mix(bands, 0);
+	}
+
+	/*
+	 * Whether line may come next: its band is the lowest of the bands left
+	 * when a band starts, and it is the lowest line left in its band.
+	 */
+	private static boolean firstChoice(int line, boolean lineUsed[], boolean groupUsed[], long lineKeys[],
+			long groupKeys[]) {
+		int group = line / ORDER;
+		boolean starting = true;
+		for (int l = group * ORDER; l < group * ORDER + ORDER; l++) {
+			if (!lineUsed[l])
+				continue;
+			starting = false;
+			break;
+		}
+		if (starting) {
+			for (int g = 0; g < ORDER; g++) {
+				if (!groupUsed[g] && groupKeys[g] < groupKeys[group])
+					return false;
+			}
+		}
+		for (int l = group * ORDER; l < group * ORDER + ORDER; l++) {
+			if (!lineUsed[l] && lineKeys[l] < lineKeys[line])
+				return false;
+		}
+		return true;
+	}
+
+	public Transform transform() {
+		return recorded;
+	}
+
+	/* 1 if v goes below the best string at pos (best is rewritten), 0 if equal, -1 if above */
+	private int compare(int pos, int v) {
+		if (v > best[pos])
+			return -1;
+		if (v == best[pos])
+			return 0;
+		best[pos] = v;
+		for (int i = pos + 1; i < CELLS; i++)
+			best[i] = Integer.MAX_VALUE;
+		version++;
+		return 1;
+	}
+
+	/* Canonical digit of d, labelling it on first sight; returns whether it was new */
+	private boolean labelOf(int d) {
+		if (d == 0 || label[d] != 0)
+			return false;
+		label[d] = ++labels;
+		return true;
+	}
+
+	/* Chooses the column for output cell j of the first row */
+	private void firstRow(int j) {
+		if (j == SIZE) {
+			nextRow(1);
+			return;
+		}
+		int from, to;
+		if (j % ORDER == 0) {
+			from = 0;
+			to = SIZE;
+		} else {
+			from = colOrder[j - 1] / ORDER * ORDER;
+			to = from + ORDER;
+		}
+		for (int col = from; col < to; col++) {
+			if (colUsed[col] || (j % ORDER == 0 && stackUsed[col / ORDER])
+					|| !firstChoice(col, colUsed, stackUsed, colKey, colBandKey))
+				continue;
+
+			int d = grid[rowOrder[0] * SIZE + col];
+			boolean fresh = labelOf(d);
+			if (compare(j, d == 0 ? 0 : label[d]) >= 0) {
+				colOrder[j] = col;
+				colUsed[col] = true;
+				if (j % ORDER == 0)
+					stackUsed[col / ORDER] = true;
+				firstRow(j + 1);
+				if (j % ORDER == 0)
+					stackUsed[col / ORDER] = false;
+				colUsed[col] = false;
+			}
+			if (fresh) {
+				label[d] = 0;
+				labels--;
+			}
+		}
+	}
+
+	/* Chooses the source row for output row i, the columns are fixed by now */
+	private void nextRow(int i) {
+		if (i == SIZE) {
+			record();
+			return;
+		}
+		for (int row = 0; row < SIZE; row++) {
+			if (rowUsed[row])
+				continue;
+			if (i % ORDER == 0 ? bandUsed[row / ORDER] : row / ORDER != rowOrder[i - 1] / ORDER)
+				continue;
+			if (!firstChoice(row, rowUsed, bandUsed, rowKey, rowBandKey))
+				continue;
+
+			rowOrder[i] = row;
+			rowUsed[row] = true;
+			if (i % ORDER == 0)
+				bandUsed[row / ORDER] = true;
+			rowCells(i, 0);
+			if (i % ORDER == 0)
+				bandUsed[row / ORDER] = false;
+			rowUsed[row] = false;
+		}
+	}
+
+	private void rowCells(int i, int j) {
+		if (j == SIZE) {
+			nextRow(i + 1);
+			return;
+		}
+		int d = grid[rowOrder[i] * SIZE + colOrder[j]];
+		boolean fresh = labelOf(d);
+		if (compare(i * SIZE + j, d == 0 ? 0 : label[d]) >= 0)
+			rowCells(i, j + 1);
+		if (fresh) {
+			label[d] = 0;
+			labels--;
+		}
+	}
+
+	private void record() {
+		if (recordedVersion == version)
+			return;
+		recordedVersion = version;
+
+		int complete[] = label.clone();
+		int next = labels;
+		for (int d = 1; d <= SIZE; d++) {
+			if (complete[d] == 0)
+				complete[d] = ++next;
+		}
+		complete[0] = 0;
+		recorded = new Transform(transposed == 1, rowOrder.clone(), colOrder.clone(), complete);
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Knuth's Algorithm X with Dancing Links for the Sudoku exact cover problem.
+ *
+ * Rows are the (cell, value) candidates, 729 on a 9x9 board, columns the
+ * constraints, 324 on a 9x9: cell filled, row has value, column has value, box
+ * has value. Every node of the sparse matrix lives in a preallocated arena of
+ * int arrays (left, right, up, down, column, row id), node 0 is the root and
+ * nodes 1..columns are the column headers. Givens are covered up front, and
+ * the search always branches on the column with the fewest rows left.
+ *
+ * One instance is reused for any number of puzzles; loading a puzzle relinks
+ * the arena in place, nothing is allocated per puzzle or per node.
+ */
+public class DancingLinks {
+
+	final SudokuTopology topology;
+	private final int size;
+	private final int cells;
+	private final int columns;
+
+	private final int left[];
+	private final int right[];
+	private final int up[];
+	private final int down[];
+	private final int column[];
+	private final int rowOf[];
+	private final int columnSize[];
+
+	private final int rowFirstNode[]; // first node of every candidate row
+	private final int solution[];     // chosen rows, one per cell at most
+	private int depth;
+
+	private final CancellationToken token;
+
+	final SearchStats stats; // search counters since construction
+
+	public DancingLinks() {
+		this(SudokuTopology.STANDARD, null);
+	}
+
+	public DancingLinks(CancellationToken token) {
+		this(SudokuTopology.STANDARD, token);
+	}
+
+	public DancingLinks(SudokuTopology topology, CancellationToken token) {
+		this(topology, token, new SearchStats());
+	}
+
+	public DancingLinks(SudokuTopology topology, CancellationToken token, SearchStats stats) {
+		this.topology = topology;
+		this.token = token;
+		this.stats = stats;
+		size = topology.size;
+		cells = topology.cells;
+		columns = 4 * cells;
+		int rows = cells * size;
+		int arena = 1 + columns + 4 * rows;
+
+		left = new int[arena];
+		right = new int[arena];
+		up = new int[arena];
+		down = new int[arena];
+		column = new int[arena];
+		rowOf = new int[arena];
+		columnSize = new int[columns + 1];
+		rowFirstNode = new int[rows];
+		solution = new int[cells];
+	}
+
+	/* Rebuilds the full (cells * size) x (4 * cells) matrix */
+	private void reset() {
+		for (int c = 0; c <= columns; c++) {
+			left[c] = c == 0 ? columns : c - 1;
+			right[c] = c == columns ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+			columnSize[c] = 0;
+		}
+
+		int node = columns + 1;
+		for (int cell = 0; cell < cells; cell++) {
+			int r = topology.rowOf[cell], c = topology.colOf[cell], b = topology.boxOf[cell];
+			for (int v = 0; v < size; v++) {
+				int row = cell * size + v;
+				int first = node;
+				rowFirstNode[row] = first;
+				node = addNode(node, row, 1 + cell);
+				node = addNode(node, row, 1 + cells + r * size + v);
+				node = addNode(node, row, 1 + 2 * cells + c * size + v);
+				node = addNode(node, row, 1 + 3 * cells + b * size + v);
+				// link the row's four nodes into a ring
+				for (int j = first; j < node; j++) {
+					left[j] = j == first ? node - 1 : j - 1;
+					right[j] = j == node - 1 ? first : j + 1;
+				}
+			}
+		}
+		depth = 0;
+	}
+
+	private int addNode(int node, int row, int col) {
+		rowOf[node] = row;
+		column[node] = col;
+		up[node] = up[col];
+		down[node] = col;
+		down[up[col]] = node;
+		up[col] = node;
+		columnSize[col]++;
+		return node + 1;
+	}
+
+	private void cover(int c) {
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for (int i = down[c]; i != c; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				up[down[j]] = up[j];
+				down[up[j]] = down[j];
+				columnSize[column[j]]--;
+			}
+		}
+	}
+
+	private void uncover(int c) {
+		for (int i = up[c]; i != c; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				columnSize[column[j]]++;
+				up[down[j]] = j;
+				down[up[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+
+	/* Puts a candidate row into the partial solution by covering all its columns */
+	private void select(int row) {
+		int first = rowFirstNode[row];
+		cover(column[first]);
+		for (int j = right[first]; j != first; j = right[j])
+			cover(column[j]);
+	}
+
+	/*
+	 * Loads the values in row-major order, 0 = blank.
+	 * Returns false if the givens already violate a constraint.
+	 */
+	public boolean load(int puzzle[]) {
+		reset();
+		for (int cell = 0; cell < cells; cell++) {
+			int val = puzzle[cell];
+			if (val == 0)
+				continue;
+			if (val < 0 || val > size)
+				return false;
+			int row = cell * size + val - 1;
+			// every column of the row must still be uncovered
+			int first = rowFirstNode[row];
+			int j = first;
+			do {
+				if (left[right[column[j]]] != column[j])
+					return false;
+				j = right[j];
+			} while (j != first);
+			select(row);
+			solution[depth++] = row;
+		}
+		return true;
+	}
+
+	private boolean cancelled() {
+		return token != null && token.isCancelled();
+	}
+
+	private int smallestColumn() {
+		int best = -1;
+		int bestSize = Integer.MAX_VALUE;
+		for (int c = right[0]; c != 0; c = right[c]) {
+			if (columnSize[c] < bestSize) {
+				bestSize = columnSize[c];
+				best = c;
+				if (bestSize <= 1)
+					break;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Counts exact covers up to limit. If firstSolution is not null the values of
+	 * the first one found are written into it.
+	 */
+	public int countSolutions(int limit, int firstSolution[]) {
+		return search(limit, 0, firstSolution);
+	}
+
+	public boolean solve(int result[]) {
+		return search(1, 0, result) == 1;
+	}
+
+	private int search(int limit, int foundSoFar, int firstSolution[]) {
+		if (right[0] == 0) {
+			if (foundSoFar == 0 && firstSolution != null) {
+				for (int i = 0; i < depth; i++)
+					firstSolution[solution[i] / size] = solution[i] % size + 1;
+			}
+			return 1;
+		}
+		if (cancelled())
+			return 0;
+		stats.nodes++;
+
+		int c = smallestColumn();
+		if (columnSize[c] == 0) {
+			// a constraint no candidate can satisfy any more
+			if (SearchStats.ENABLED)
+				stats.wipeouts++;
+			return 0;
+		}
+
+		int found = 0;
+		cover(c);
+		if (SearchStats.ENABLED)
+			stats.descend();
+		for (int r = down[c]; r != c && foundSoFar + found < limit; r = down[r]) {
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+			solution[depth++] = rowOf[r];
+			for (int j = right[r]; j != r; j = right[j])
+				cover(column[j]);
+
+			int below = search(limit, foundSoFar + found, firstSolution);
+
+			for (int j = left[r]; j != r; j = left[j])
+				uncover(column[j]);
+			depth--;
+			if (below == 0)
+				stats.backtracks++;
+			found += below;
+		}
+		if (SearchStats.ENABLED)
+			stats.ascend();
+		uncover(c);
+		return found;
+	}
+}
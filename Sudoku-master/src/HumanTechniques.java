@@ -0,0 +1,372 @@
+/*
+ * Propagation with the techniques people solve by, on BitBoard domains:
+ * naked and hidden singles, naked and hidden pairs and triples, pointing and
+ * box-line reduction, and X-Wing.
+ *
+ * apply() runs them, cheapest first, until none of them removes anything. After
+ * any technique makes progress the AC-3 worklist is drained and the loop starts
+ * again from hidden singles. Every removal goes on the board's trail, so the
+ * stage can run at a search node and be undone with the node.
+ *
+ * Naked singles are what AC-3 on singleton cells already does; they are counted
+ * as the cells apply() solved that no hidden single accounts for.
+ *
+ * How often each technique fired is kept in fired(), and hardest() gives the
+ * most difficult one used, in Technique order, for difficulty grading.
+ */
+public class HumanTechniques {
+
+	/* In order of difficulty */
+	enum Technique {
+		NAKED_SINGLE, HIDDEN_SINGLE, POINTING, BOX_LINE, NAKED_PAIR, HIDDEN_PAIR, NAKED_TRIPLE, HIDDEN_TRIPLE, X_WING
+	}
+
+	private static final int WIPEOUT = -1;
+
+	final SudokuTopology topology;
+	private final int size;
+
+	private final long fired[] = new long[Technique.values().length];
+
+	// scratch space, reused for every unit
+	private final long where[];     // where[v] = unit positions that still allow value v + 1
+	private final int subset[];
+	private final long lines[];     // X-Wing: columns (or rows) of a value per row (or column)
+
+	public HumanTechniques(SudokuTopology topology) {
+		this.topology = topology;
+		this.size = topology.size;
+		where = new long[size];
+		subset = new int[size];
+		lines = new long[size];
+	}
+
+	public long fired(Technique technique) {
+		return fired[technique.ordinal()];
+	}
+
+	/* Most difficult technique that fired since the last resetStats(), null if none did */
+	public Technique hardest() {
+		Technique techniques[] = Technique.values();
+		for (int i = techniques.length - 1; i >= 0; i--) {
+			if (fired[i] > 0)
+				return techniques[i];
+		}
+		return null;
+	}
+
+	public void resetStats() {
+		for (int i = 0; i < fired.length; i++)
+			fired[i] = 0;
+	}
+
+	/*
+	 * Runs every technique until nothing changes. Expects a board that AC-3 has
+	 * already been run on, e.g. with propagateAll() or assign().
+	 * Returns false when the board turns out to have no solution.
+	 */
+	public boolean apply(BitBoard b) {
+		int solvedBefore = solvedCells(b);
+		long hiddenBefore = fired[Technique.HIDDEN_SINGLE.ordinal()];
+
+		if (!fixpoint(b))
+			return false;
+
+		long hidden = fired[Technique.HIDDEN_SINGLE.ordinal()] - hiddenBefore;
+		fired[Technique.NAKED_SINGLE.ordinal()] += solvedCells(b) - solvedBefore - hidden;
+		return true;
+	}
+
+	private boolean fixpoint(BitBoard b) {
+		while (true) {
+			int found = hiddenSingles(b);
+			if (found == 0)
+				found = intersections(b);
+			if (found == 0)
+				found = nakedSubsets(b, 2, Technique.NAKED_PAIR);
+			if (found == 0)
+				found = hiddenSubsets(b, 2, Technique.HIDDEN_PAIR);
+			if (found == 0)
+				found = nakedSubsets(b, 3, Technique.NAKED_TRIPLE);
+			if (found == 0)
+				found = hiddenSubsets(b, 3, Technique.HIDDEN_TRIPLE);
+			if (found == 0)
+				found = xWings(b);
+
+			if (found == 0)
+				return true;
+			if (found == WIPEOUT) {
+				// cells queued before the contradiction must not leak into the next propagate()
+				b.clearQueue();
+				return false;
+			}
+			if (!b.propagate())
+				return false;
+		}
+	}
+
+	private static int solvedCells(BitBoard b) {
+		int solved = 0;
+		for (int cell = 0; cell < b.cells; cell++) {
+			if (Long.bitCount(b.domains[cell]) == 1)
+				solved++;
+		}
+		return solved;
+	}
+
+	private void fillWhere(BitBoard b, int unit[]) {
+		for (int v = 0; v < size; v++)
+			where[v] = 0;
+		for (int i = 0; i < unit.length; i++) {
+			long candidates = b.domains[unit[i]];
+			while (candidates != 0) {
+				long bit = candidates & -candidates;
+				candidates ^= bit;
+				where[Long.numberOfTrailingZeros(bit)] |= 1L << i;
+			}
+		}
+	}
+
+	/* A value with one place left in a unit goes there */
+	private int hiddenSingles(BitBoard b) {
+		int found = 0;
+		for (int unit[] : topology.units) {
+			fillWhere(b, unit);
+			for (int v = 0; v < size; v++) {
+				if (where[v] == 0)
+					return WIPEOUT;
+				if (Long.bitCount(where[v]) != 1)
+					continue;
+
+				int cell = unit[Long.numberOfTrailingZeros(where[v])];
+				long bit = 1L << v;
+				if (b.domains[cell] == bit)
+					continue;
+				if (!b.eliminate(cell, ~bit))
+					return WIPEOUT;
+				fired[Technique.HIDDEN_SINGLE.ordinal()]++;
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/*
+	 * Pointing: a value confined to one line within a box leaves the rest of the line.
+	 * Box-line: a value confined to one box within a line leaves the rest of the box.
+	 */
+	private int intersections(BitBoard b) {
+		int found = 0;
+		int units[][] = topology.units;
+
+		for (int u = 0; u < units.length; u++) {
+			int unit[] = units[u];
+			boolean box = u >= 2 * size;
+			fillWhere(b, unit);
+
+			for (int v = 0; v < size; v++) {
+				if (Long.bitCount(where[v]) < 2)
+					continue;
+				long bit = 1L << v;
+				int first = unit[Long.numberOfTrailingZeros(where[v])];
+				boolean sameRow = true, sameCol = true, sameBox = true;
+				for (long positions = where[v]; positions != 0; positions &= positions - 1) {
+					int cell = unit[Long.numberOfTrailingZeros(positions)];
+					sameRow &= topology.rowOf[cell] == topology.rowOf[first];
+					sameCol &= topology.colOf[cell] == topology.colOf[first];
+					sameBox &= topology.boxOf[cell] == topology.boxOf[first];
+				}
+
+				int removed = 0;
+				if (box && sameRow)
+					removed = clear(b, topology.rows[topology.rowOf[first]], bit, topology.boxOf, topology.boxOf[first]);
+				else if (box && sameCol)
+					removed = clear(b, topology.cols[topology.colOf[first]], bit, topology.boxOf, topology.boxOf[first]);
+				else if (!box && sameBox)
+					removed = clear(b, topology.boxes[topology.boxOf[first]], bit,
+							u < size ? topology.rowOf : topology.colOf, u < size ? topology.rowOf[first] : topology.colOf[first]);
+
+				if (removed == WIPEOUT)
+					return WIPEOUT;
+				if (removed > 0) {
+					fired[(box ? Technique.POINTING : Technique.BOX_LINE).ordinal()]++;
+					found += removed;
+				}
+			}
+		}
+		return found;
+	}
+
+	/* Removes bits from every cell of unit whose index in of[] is not keep */
+	private static int clear(BitBoard b, int unit[], long bits, int of[], int keep) {
+		int removed = 0;
+		for (int cell : unit) {
+			if (of[cell] == keep || (b.domains[cell] & bits) == 0)
+				continue;
+			if (!b.eliminate(cell, bits))
+				return WIPEOUT;
+			removed++;
+		}
+		return removed;
+	}
+
+	/* Removes bits from the cells of unit outside the given positions */
+	private static int clearOutside(BitBoard b, int unit[], long positions, long bits) {
+		int removed = 0;
+		for (int i = 0; i < unit.length; i++) {
+			int cell = unit[i];
+			if ((positions & 1L << i) != 0 || (b.domains[cell] & bits) == 0)
+				continue;
+			if (!b.eliminate(cell, bits))
+				return WIPEOUT;
+			removed++;
+		}
+		return removed;
+	}
+
+	/* k cells of a unit holding only k values between them: no other cell of the unit gets those values */
+	private int nakedSubsets(BitBoard b, int k, Technique technique) {
+		int found = 0;
+		for (int unit[] : topology.units) {
+			int n = 0;
+			for (int i = 0; i < unit.length; i++) {
+				int count = Long.bitCount(b.domains[unit[i]]);
+				if (count >= 2 && count <= k)
+					subset[n++] = i;
+			}
+
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++) {
+					long pair = b.domains[unit[subset[i]]] | b.domains[unit[subset[j]]];
+					long positions = 1L << subset[i] | 1L << subset[j];
+					int removed = 0;
+					if (k == 2) {
+						if (Long.bitCount(pair) == 2)
+							removed = clearOutside(b, unit, positions, pair);
+					} else {
+						for (int l = j + 1; l < n && removed != WIPEOUT; l++) {
+							long triple = pair | b.domains[unit[subset[l]]];
+							if (Long.bitCount(triple) != 3)
+								continue;
+							int cleared = clearOutside(b, unit, positions | 1L << subset[l], triple);
+							if (cleared > 0)
+								fired[technique.ordinal()]++;
+							removed = cleared == WIPEOUT ? WIPEOUT : removed + cleared;
+						}
+					}
+					if (removed == WIPEOUT)
+						return WIPEOUT;
+					if (k == 2 && removed > 0)
+						fired[technique.ordinal()]++;
+					found += removed;
+				}
+			}
+		}
+		return found;
+	}
+
+	/* k values with only k places left in a unit: those places take no other value */
+	private int hiddenSubsets(BitBoard b, int k, Technique technique) {
+		int found = 0;
+		for (int unit[] : topology.units) {
+			fillWhere(b, unit);
+			int n = 0;
+			for (int v = 0; v < size; v++) {
+				int count = Long.bitCount(where[v]);
+				if (count >= 2 && count <= k)
+					subset[n++] = v;
+			}
+
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++) {
+					long places = where[subset[i]] | where[subset[j]];
+					long values = 1L << subset[i] | 1L << subset[j];
+					if (k == 2) {
+						if (Long.bitCount(places) == 2) {
+							int removed = restrict(b, unit, places, values);
+							if (removed == WIPEOUT)
+								return WIPEOUT;
+							if (removed > 0)
+								fired[technique.ordinal()]++;
+							found += removed;
+						}
+						continue;
+					}
+					for (int l = j + 1; l < n; l++) {
+						if (Long.bitCount(places | where[subset[l]]) != 3)
+							continue;
+						int removed = restrict(b, unit, places | where[subset[l]], values | 1L << subset[l]);
+						if (removed == WIPEOUT)
+							return WIPEOUT;
+						if (removed > 0)
+							fired[technique.ordinal()]++;
+						found += removed;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/* Narrows the cells at the given unit positions to values */
+	private static int restrict(BitBoard b, int unit[], long positions, long values) {
+		int removed = 0;
+		for (; positions != 0; positions &= positions - 1) {
+			int cell = unit[Long.numberOfTrailingZeros(positions)];
+			if ((b.domains[cell] & ~values) == 0)
+				continue;
+			if (!b.eliminate(cell, ~values))
+				return WIPEOUT;
+			removed++;
+		}
+		return removed;
+	}
+
+	/*
+	 * A value left in exactly the same two columns of two rows must take those
+	 * columns in those rows, so the rest of both columns lose it. Likewise with
+	 * rows and columns swapped.
+	 */
+	private int xWings(BitBoard b) {
+		int found = 0;
+		for (int v = 0; v < size; v++) {
+			long bit = 1L << v;
+			for (int pass = 0; pass < 2; pass++) {
+				int lineUnits[][] = pass == 0 ? topology.rows : topology.cols;
+				int crossUnits[][] = pass == 0 ? topology.cols : topology.rows;
+
+				for (int line = 0; line < size; line++) {
+					lines[line] = 0;
+					int unit[] = lineUnits[line];
+					for (int i = 0; i < size; i++) {
+						if ((b.domains[unit[i]] & bit) != 0)
+							lines[line] |= 1L << i;
+					}
+				}
+
+				for (int first = 0; first < size; first++) {
+					if (Long.bitCount(lines[first]) != 2)
+						continue;
+					for (int second = first + 1; second < size; second++) {
+						if (lines[second] != lines[first])
+							continue;
+
+						int removed = 0;
+						long positions = 1L << first | 1L << second;
+						for (long crosses = lines[first]; crosses != 0; crosses &= crosses - 1) {
+							int cleared = clearOutside(b, crossUnits[Long.numberOfTrailingZeros(crosses)], positions, bit);
+							if (cleared == WIPEOUT)
+								return WIPEOUT;
+							removed += cleared;
+						}
+						if (removed > 0) {
+							fired[Technique.X_WING.ordinal()]++;
+							found += removed;
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+}
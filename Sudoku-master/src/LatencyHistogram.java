@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Latency histogram in microseconds, safe to record into from any thread.
+ *
+ * Below 64 us every microsecond has its own bucket, above that each power of
+ * two is cut into 32 buckets, so a percentile is within about 3% of the real
+ * value at any scale with under 2k counters and no allocation per record.
+ */
+class LatencyHistogram {
+
+	static final int LINEAR = 64;
+	static final int SUB_BITS = 5;
+	static final int SUB = 1 << SUB_BITS;
+	static final int BUCKETS = LINEAR + (63 - 6) * SUB;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalMicros = new AtomicLong();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	static int bucket(long micros) {
+		if (micros < LINEAR)
+			return (int) Math.max(micros, 0);
+		int exponent = 63 - Long.numberOfLeadingZeros(micros); // 6 and up
+		int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB - 1);
+		return LINEAR + (exponent - 6) * SUB + sub;
+	}
+
+	/* Smallest value that falls in bucket i */
+	static long lowest(int i) {
+		if (i < LINEAR)
+			return i;
+		int exponent = (i - LINEAR) / SUB + 6;
+		int sub = (i - LINEAR) % SUB;
+		return (long) (SUB + sub) << (exponent - SUB_BITS);
+	}
+
+	public void record(long nanos) {
+		long micros = nanos / 1000;
+		counts.incrementAndGet(bucket(micros));
+		count.incrementAndGet();
+		totalMicros.addAndGet(micros);
+		long max;
+		while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros))
+			;
+	}
+
+	public long count() {
+		return count.get();
+	}
+
+	public long maxMicros() {
+		return maxMicros.get();
+	}
+
+	public double meanMicros() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) totalMicros.get() / n;
+	}
+
+	/* Latency in microseconds that a fraction p (0.5, 0.99...) of the records stay at or below */
+	public long percentile(double p) {
+		long n = count.get();
+		if (n == 0)
+			return 0;
+		long rank = (long) Math.ceil(p * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(lowest(i), maxMicros.get());
+		}
+		return maxMicros.get();
+	}
+
+	/* Records that race with a reset may land on either side of it */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		totalMicros.set(0);
+		maxMicros.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("p50 %d us, p99 %d us, p99.9 %d us, max %d us, mean %.0f us", percentile(0.5),
+				percentile(0.99), percentile(0.999), maxMicros(), meanMicros());
+	}
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Load generator for SolverService. Every connection has a sender thread that
+ * keeps up to `pipeline` requests outstanding and a receiver thread that takes
+ * the responses, which come back in order, so the send time of a response is
+ * the oldest one still pending. Latency is measured from the write of the
+ * request to the read of its response.
+ *
+ * Puzzles come from a file of one-line puzzles, or the 9x9 boardfiles, and are
+ * sent round robin.
+ *
+ * Usage: java LoadGenerator [-port n | -socket path] [-connections n]
+ *        [-requests n] [-pipeline n] [-input puzzles]
+ */
+public class LoadGenerator {
+
+	private final byte puzzles[][];
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+
+	public LoadGenerator(List<String> puzzles) {
+		this.puzzles = new byte[puzzles.size()][];
+		for (int i = 0; i < this.puzzles.length; i++)
+			this.puzzles[i] = (puzzles.get(i) + "\n").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/* Sends requests on one connection and waits for every response */
+	private void connection(SocketAddress address, long requests, int pipeline, int offset) throws Exception {
+		try (SolverClient client = new SolverClient(address)) {
+			Semaphore window = new Semaphore(pipeline);
+			AtomicLongArray sent = new AtomicLongArray(pipeline); // send times, request i at i % pipeline
+			Exception failure[] = new Exception[1];
+
+			Thread receiver = new Thread(() -> {
+				try {
+					for (long i = 0; i < requests; i++) {
+						String response = client.receive();
+						latency.record(System.nanoTime() - sent.get((int) (i % pipeline)));
+						window.release();
+						String kind = response.length() == SolverService.CELLS ? "solved" : response;
+						responses.computeIfAbsent(kind, k -> new LongAdder()).increment();
+					}
+				} catch (IOException e) {
+					failure[0] = e;
+				}
+			}, "receiver");
+			receiver.start();
+
+			ByteBuffer out = ByteBuffer.allocate(1 << 16);
+			long i = 0;
+			while (i < requests) {
+				window.acquire();
+				int permits = 1 + window.drainPermits();
+				out.clear();
+				long now = System.nanoTime();
+				for (int p = 0; p < permits; p++, i++) {
+					byte puzzle[] = puzzles[(int) ((offset + i) % puzzles.length)];
+					if (i == requests || out.remaining() < puzzle.length) {
+						window.release(permits - p);
+						break;
+					}
+					sent.set((int) (i % pipeline), now);
+					out.put(puzzle);
+				}
+				out.flip();
+				client.send(out);
+			}
+			receiver.join();
+			if (failure[0] != null)
+				throw failure[0];
+		}
+	}
+
+	public void run(SocketAddress address, int connections, long requests, int pipeline) throws Exception {
+		List<Thread> threads = new ArrayList<>();
+		Exception failure[] = new Exception[1];
+		long start = System.nanoTime();
+
+		for (int c = 0; c < connections; c++) {
+			long share = requests / connections + (c < requests % connections ? 1 : 0);
+			int offset = c * (puzzles.length / connections);
+			Thread t = new Thread(() -> {
+				try {
+					connection(address, share, pipeline, offset);
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}, "sender");
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads)
+			t.join();
+		if (failure[0] != null)
+			throw failure[0];
+
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%d requests on %d connections, pipeline %d, in %d ms: %.0f requests/s",
+				latency.count(), connections, pipeline, elapsed / 1000000, latency.count() * 1e9 / elapsed));
+		System.out.println("latency " + latency);
+		System.out.println("responses " + new TreeMap<>(responses));
+	}
+
+	public static void main(String ar[]) throws Exception {
+
+		List<String> puzzles = new ArrayList<>();
+		String input = null;
+		for (int i = 0; i + 1 < ar.length; i++) {
+			if (ar[i].equals("-input"))
+				input = ar[i + 1];
+		}
+		if (input != null) {
+			for (String line : Files.readAllLines(Paths.get(input), StandardCharsets.US_ASCII)) {
+				if (!line.isEmpty())
+					puzzles.add(line);
+			}
+		} else {
+			for (SudokuAlgorithms.levels level : SudokuAlgorithms.levels.values()) {
+				for (int number = 1; number <= 5; number++) {
+					StringBuilder sb = new StringBuilder();
+					for (int v : new Sudoku(level.toString(), number).values())
+						sb.append(v);
+					puzzles.add(sb.toString());
+				}
+			}
+		}
+
+		new LoadGenerator(puzzles).run(SolverService.address(ar), (int) SolverService.option(ar, "-connections", 4),
+				SolverService.option(ar, "-requests", 100000), (int) SolverService.option(ar, "-pipeline", 32));
+	}
+}
@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/*
+ * Incremental minimum remaining values selection.
+ *
+ * For every blank cell the number of domain values not yet taken by an assigned
+ * peer (remaining) and the number of unassigned peers (degree) are kept up to
+ * date as peers are assigned and unassigned. Cells sit in buckets keyed on
+ * (remaining, most unassigned peers first), with a bitset of non-empty buckets,
+ * so poll() returns the MRV cell with degree tie-break without scanning the board.
+ */
+class MRVQueue {
+
+	private final SudokuTopology topology;
+	private final int stride;       // degree key span, peerCount + 1
+
+	private final long domains[];   // initial domain bits of every cell
+	private final int seen[];       // seen[cell * (size + 1) + v] = assigned peers holding v
+	private final int remaining[];
+	private final int degree[];
+
+	private final int key[];        // bucket of a queued cell, -1 when not queued
+	private final int next[];
+	private final int prev[];
+	private final int head[];
+	private final long nonEmpty[];
+
+	public MRVQueue(Sudoku s) {
+		topology = s.topology;
+		int cells = topology.cells;
+		int size = topology.size;
+		stride = topology.peerCount + 1;
+
+		domains = new long[cells];
+		seen = new int[cells * (size + 1)];
+		remaining = new int[cells];
+		degree = new int[cells];
+		key = new int[cells];
+		next = new int[cells];
+		prev = new int[cells];
+		head = new int[(size + 1) * stride];
+		nonEmpty = new long[(head.length + 63) / 64];
+		Arrays.fill(head, -1);
+		Arrays.fill(key, -1);
+
+		int values[] = new int[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			Cell c = s.board[topology.rowOf[cell]][topology.colOf[cell]];
+			values[cell] = c.val;
+			for (int val : c.domain)
+				domains[cell] |= 1L << (val - 1);
+		}
+
+		for (int cell = 0; cell < cells; cell++) {
+			long taken = 0;
+			for (int peer : topology.peers[cell]) {
+				int val = values[peer];
+				if (val == 0) {
+					degree[cell]++;
+				} else {
+					seen[cell * (size + 1) + val]++;
+					taken |= 1L << (val - 1);
+				}
+			}
+			remaining[cell] = Long.bitCount(domains[cell] & ~taken);
+			if (values[cell] == 0)
+				link(cell);
+		}
+	}
+
+	public boolean isEmpty() {
+		for (long word : nonEmpty) {
+			if (word != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/* Removes and returns the cell with the fewest remaining values, -1 if none are queued */
+	public int poll() {
+		for (int w = 0; w < nonEmpty.length; w++) {
+			if (nonEmpty[w] != 0) {
+				int cell = head[w * 64 + Long.numberOfTrailingZeros(nonEmpty[w])];
+				unlink(cell);
+				return cell;
+			}
+		}
+		return -1;
+	}
+
+	/* Puts a cell taken by poll() back, e.g. when the search backtracks over it */
+	public void push(int cell) {
+		link(cell);
+	}
+
+	/* cell now holds val: its peers lose val and one unassigned neighbour */
+	public void assigned(int cell, int val) {
+		long bit = 1L << (val - 1);
+		for (int peer : topology.peers[cell]) {
+			degree[peer]--;
+			if (seen[peer * (topology.size + 1) + val]++ == 0 && (domains[peer] & bit) != 0)
+				remaining[peer]--;
+			relink(peer);
+		}
+	}
+
+	/* Reverts assigned(cell, val) */
+	public void unassigned(int cell, int val) {
+		long bit = 1L << (val - 1);
+		for (int peer : topology.peers[cell]) {
+			degree[peer]++;
+			if (--seen[peer * (topology.size + 1) + val] == 0 && (domains[peer] & bit) != 0)
+				remaining[peer]++;
+			relink(peer);
+		}
+	}
+
+	private void relink(int cell) {
+		if (key[cell] < 0)
+			return;
+		if (key[cell] == keyOf(cell))
+			return;
+		unlink(cell);
+		link(cell);
+	}
+
+	private int keyOf(int cell) {
+		return remaining[cell] * stride + (topology.peerCount - degree[cell]);
+	}
+
+	private void link(int cell) {
+		int k = keyOf(cell);
+		key[cell] = k;
+		prev[cell] = -1;
+		next[cell] = head[k];
+		if (head[k] >= 0)
+			prev[head[k]] = cell;
+		head[k] = cell;
+		nonEmpty[k >>> 6] |= 1L << k;
+	}
+
+	private void unlink(int cell) {
+		int k = key[cell];
+		if (prev[cell] >= 0)
+			next[prev[cell]] = next[cell];
+		else
+			head[k] = next[cell];
+		if (next[cell] >= 0)
+			prev[next[cell]] = prev[cell];
+		if (head[k] < 0)
+			nonEmpty[k >>> 6] &= ~(1L << k);
+		key[cell] = -1;
+	}
+}
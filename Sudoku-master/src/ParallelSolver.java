@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Fork/join tree search. Down to splitDepth every candidate value of the MRV
+ * cell becomes its own task holding a BoardState snapshot, below that a task
+ * finishes its subtree with the sequential MAC search of BitSolver. Idle
+ * workers steal pending subtrees and restore them onto a BitBoard of their
+ * own, so no task allocates a board.
+ *
+ * Solutions are counted in one shared AtomicInteger. Once it reaches the limit
+ * (1 when only a solution is wanted) the shared token is cancelled and every
+ * task stops at its next node.
+ */
+public class ParallelSolver {
+
+	static final int DEFAULT_SPLIT_DEPTH = 3;
+
+	private final ForkJoinPool pool;
+	private final int splitDepth;
+
+	// one working board per worker thread, restored from each task's snapshot
+	private final ThreadLocal<BitBoard> boards = new ThreadLocal<>();
+
+	public ParallelSolver() {
+		this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+	}
+
+	public ParallelSolver(ForkJoinPool pool, int splitDepth) {
+		this.pool = pool;
+		this.splitDepth = splitDepth;
+	}
+
+	/* State shared by all tasks of one search */
+	private static class Search {
+		final int limit;
+		final CancellationToken token = new CancellationToken();
+		final AtomicInteger found = new AtomicInteger();
+		final AtomicReference<int[]> first = new AtomicReference<>();
+
+		Search(int limit) {
+			this.limit = limit;
+		}
+
+		// a task cut short by the limit counts -1, the others have the limit covered
+		void record(int count, int solution[]) {
+			if (count <= 0)
+				return;
+			first.compareAndSet(null, solution);
+			if (found.addAndGet(count) >= limit)
+				token.cancel();
+		}
+	}
+
+	private class SearchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BoardState state;
+		private final int depth;
+		private final Search search;
+
+		SearchTask(BoardState state, int depth, Search search) {
+			this.state = state;
+			this.depth = depth;
+			this.search = search;
+		}
+
+		@Override
+		protected void compute() {
+			if (search.token.isCancelled())
+				return;
+
+			BitBoard board = boards.get();
+			if (board == null || board.topology != state.topology) {
+				board = new BitBoard(state.topology);
+				boards.set(board);
+			}
+			board.restore(state);
+
+			if (depth >= splitDepth) {
+				int solution[] = new int[board.cells];
+				int remaining = search.limit - search.found.get();
+				if (remaining > 0)
+					search.record(new BitSolver(search.token).countSolutions(board, remaining, solution), solution);
+				return;
+			}
+
+			int cell = BitSolver.findMRVCell(board);
+			if (cell < 0) {
+				search.record(1, board.values.clone());
+				return;
+			}
+
+			List<SearchTask> subtasks = new ArrayList<>();
+			long candidates = board.domains[cell];
+			while (candidates != 0) {
+				long bit = candidates & -candidates;
+				candidates ^= bit;
+
+				int mark = board.mark();
+				if (board.assign(cell, Long.numberOfTrailingZeros(bit) + 1))
+					subtasks.add(new SearchTask(board.snapshot(), depth + 1, search));
+				board.undo(mark);
+				board.values[cell] = 0;
+			}
+			// the subtasks may run on this thread and reuse its board, it is not touched again
+			invokeAll(subtasks);
+		}
+	}
+
+	private Search run(BitBoard b, int limit) {
+		Search search = new Search(limit);
+		BitBoard root = new BitBoard(b);
+		if (root.propagateAll())
+			pool.invoke(new SearchTask(root.snapshot(), 0, search));
+		return search;
+	}
+
+	/* Solves b in place, returns false if there is no solution */
+	public boolean solve(BitBoard b) {
+		int solution[] = run(b, 1).first.get();
+		if (solution == null)
+			return false;
+
+		for (int i = 0; i < b.cells; i++) {
+			b.values[i] = solution[i];
+			b.domains[i] = 1L << (solution[i] - 1);
+		}
+		return true;
+	}
+
+	public boolean solve(Sudoku s) {
+		BitBoard b = new BitBoard(s);
+		if (!solve(b))
+			return false;
+		b.copyTo(s);
+		s.unassigned.clear();
+		return true;
+	}
+
+	/* Number of solutions of b, counting stops at limit. b is not modified */
+	public int countSolutions(BitBoard b, int limit) {
+		return Math.min(run(b, limit).found.get(), limit);
+	}
+
+	public int countSolutions(Sudoku s, int limit) {
+		return countSolutions(new BitBoard(s), limit);
+	}
+}
@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Parallel tempering over several Annealer replicas.
+ *
+ * Replicas sit on a geometric temperature ladder between MIN_TEMPERATURE and
+ * MAX_TEMPERATURE. Each round every replica runs a sweep at its temperature on
+ * the worker pool, then neighbouring temperatures are offered an exchange with
+ * the usual Metropolis rule. Exchanges swap temperatures rather than boards.
+ *
+ * Every replica gets its own SplittableRandom split off the run seed and the
+ * exchanges are drawn on the calling thread between rounds, so a run is
+ * reproducible from its seed whatever the thread count. The run stops at the
+ * end of the first round in which a replica reaches the goal score, after
+ * maxRounds rounds, which is what ends a run on a board without solution, or
+ * as soon as the token is cancelled: every sweep checks it between steps. A
+ * board with no two cells to swap is given up at once. solve(Sudoku) runs
+ * from DEFAULT_SEED.
+ */
+public class ParallelTempering {
+
+	static final double MIN_TEMPERATURE = 0.05;
+	static final double MAX_TEMPERATURE = 1.0;
+	static final int SWEEP = 2000;
+	static final int MAX_ROUNDS = 5000;
+	static final long DEFAULT_SEED = 1;
+
+	private final int replicas;
+	private final int maxRounds;
+	private final ExecutorService pool;
+
+	public ParallelTempering(int replicas, int threads) {
+		this(replicas, threads, MAX_ROUNDS);
+	}
+
+	/* maxRounds 0 for no limit, only the token stops an unsolved run then */
+	public ParallelTempering(int replicas, int threads, int maxRounds) {
+		this.replicas = replicas;
+		this.maxRounds = maxRounds;
+		this.pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "tempering");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/* One replica per core, at least four so a single core still has a ladder */
+	public ParallelTempering() {
+		this(Math.max(4, Runtime.getRuntime().availableProcessors()), Runtime.getRuntime().availableProcessors());
+	}
+
+	/*
+	 * Returns the solved values, or null if the token was cancelled or the
+	 * rounds ran out first. token may be null.
+	 */
+	public int[] solve(int puzzle[], long seed, CancellationToken token) throws InterruptedException {
+
+		SplittableRandom random = new SplittableRandom(seed);
+		Annealer chains[] = new Annealer[replicas];
+		double temperature[] = new double[replicas];
+		int atTemperature[] = new int[replicas]; // replica currently at ladder slot k
+
+		for (int i = 0; i < replicas; i++) {
+			chains[i] = new Annealer(puzzle, random.split().nextLong());
+			atTemperature[i] = i;
+			temperature[i] = replicas == 1 ? MIN_TEMPERATURE
+					: MIN_TEMPERATURE * Math.pow(MAX_TEMPERATURE / MIN_TEMPERATURE, (double) i / (replicas - 1));
+		}
+
+		double replicaTemperature[] = new double[replicas];
+		List<Callable<Boolean>> sweeps = new ArrayList<>(replicas);
+		for (int i = 0; i < replicas; i++) {
+			Annealer chain = chains[i];
+			int replica = i;
+			sweeps.add(() -> chain.sweep(replicaTemperature[replica], SWEEP, token));
+		}
+		if (!chains[0].solved() && !chains[0].movable())
+			return null;
+
+		for (int round = 0; maxRounds == 0 || round < maxRounds; round++) {
+			if (token != null && token.isCancelled())
+				break;
+			for (int k = 0; k < replicas; k++) {
+				replicaTemperature[atTemperature[k]] = temperature[k];
+			}
+
+			try {
+				List<Future<Boolean>> done = pool.invokeAll(sweeps);
+				for (int i = 0; i < replicas; i++) {
+					if (done.get(i).get())
+						return chains[i].values.clone();
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+
+			// Replica exchange between neighbouring temperatures
+			for (int k = 0; k + 1 < replicas; k++) {
+				Annealer cold = chains[atTemperature[k]];
+				Annealer hot = chains[atTemperature[k + 1]];
+				double exponent = (1 / temperature[k] - 1 / temperature[k + 1]) * (cold.score() - hot.score());
+				if (exponent >= 0 || Math.exp(exponent) >= random.nextDouble()) {
+					int tmp = atTemperature[k];
+					atTemperature[k] = atTemperature[k + 1];
+					atTemperature[k + 1] = tmp;
+				}
+			}
+		}
+		return null;
+	}
+
+	public boolean solve(Sudoku s) {
+		return solve(s, DEFAULT_SEED, null);
+	}
+
+	public boolean solve(Sudoku s, long seed, CancellationToken token) {
+		int solution[];
+		try {
+			solution = solve(s.values(), seed, token);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		if (solution == null)
+			return false;
+
+		s.fillSolution(solution);
+		return true;
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+}
@@ -0,0 +1,127 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/*
+ * Races several solvers on independent copies of the same puzzle and returns
+ * the first verified solution. The losers share a CancellationToken with the
+ * winner and unwind at their next checkpoint.
+ *
+ * Which strategy wins is counted, see winCounts().
+ */
+public class PortfolioSolver {
+
+	static final Map<String, BiPredicate<SudokuAlgorithms, Sudoku>> STRATEGIES = new LinkedHashMap<>();
+
+	static {
+		STRATEGIES.put("backtracking", SudokuAlgorithms::backtracking);
+		STRATEGIES.put("forwardChecking", SudokuAlgorithms::forwardChecking);
+		STRATEGIES.put("runAC3backtracking", SudokuAlgorithms::runAC3backtracking);
+		STRATEGIES.put("maintainingArcConsistency", SudokuAlgorithms::maintainingArcConsistency);
+		STRATEGIES.put("heuristic", SudokuAlgorithms::heuristic);
+		STRATEGIES.put("dancingLinks", SudokuAlgorithms::dancingLinks);
+		STRATEGIES.put("humanTechniques", SudokuAlgorithms::humanTechniques);
+		STRATEGIES.put("simulatedAnnealing", SudokuAlgorithms::simulatedAnnealing);
+	}
+
+	private final ExecutorService pool;
+	private final Map<String, LongAdder> wins = new ConcurrentHashMap<>();
+
+	static class Result {
+		final String winner;
+		final Sudoku board;
+		final long nanos;
+
+		Result(String winner, Sudoku board, long nanos) {
+			this.winner = winner;
+			this.board = board;
+			this.nanos = nanos;
+		}
+	}
+
+	/* One thread per strategy, so every solver makes progress at the same time */
+	public PortfolioSolver() {
+		this(STRATEGIES.size());
+	}
+
+	public PortfolioSolver(int threads) {
+		pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "portfolio");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/*
+	 * Returns the first verified solution, or null when no strategy solved the puzzle.
+	 * The puzzle itself is not modified.
+	 */
+	public Result solve(Sudoku puzzle) throws InterruptedException {
+
+		int values[] = puzzle.values();
+		CancellationToken token = new CancellationToken();
+		CompletionService<Result> race = new ExecutorCompletionService<>(pool);
+		long start = System.nanoTime();
+
+		for (Map.Entry<String, BiPredicate<SudokuAlgorithms, Sudoku>> strategy : STRATEGIES.entrySet()) {
+			race.submit(() -> {
+				Sudoku copy = new Sudoku(values);
+				if (!strategy.getValue().test(new SudokuAlgorithms(token), copy) || !copy.isSolved())
+					return null;
+				return new Result(strategy.getKey(), copy, System.nanoTime() - start);
+			});
+		}
+
+		try {
+			for (int i = 0; i < STRATEGIES.size(); i++) {
+				Result r = race.take().get();
+				if (r != null) {
+					wins.computeIfAbsent(r.winner, k -> new LongAdder()).increment();
+					return r;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			token.cancel();
+		}
+		return null;
+	}
+
+	/* How often each strategy has won so far */
+	public Map<String, Long> winCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> e : wins.entrySet()) {
+			counts.put(e.getKey(), e.getValue().sum());
+		}
+		return Collections.unmodifiableMap(counts);
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	public static void main(String ar[]) throws InterruptedException {
+
+		PortfolioSolver portfolio = new PortfolioSolver();
+
+		for (SudokuAlgorithms.levels level : SudokuAlgorithms.levels.values()) {
+			for (int number = 1; number <= 5; number++) {
+				Result r = portfolio.solve(new Sudoku(level.toString(), number));
+				System.out.println(level.toString() + number + "    " + (r == null ? "unsolved"
+						: r.winner + " --> " + r.nanos / 1000 + " us"));
+			}
+		}
+		System.out.println(portfolio.winCounts());
+		portfolio.shutdown();
+	}
+}
@@ -0,0 +1,338 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Packed binary corpus of 9x9 puzzles, read through memory maps.
+ *
+ * Layout, all big endian:
+ *   header    16 bytes: magic "SUD4", version, flags (bit 0: solutions
+ *             follow), 2 reserved bytes, the puzzle count as a long
+ *   puzzles   41 bytes each, 81 cells of 4 bits in row-major order, the first
+ *             cell of a byte in its high nibble, 0 = blank
+ *   solutions the same for every puzzle in the same order, only with flag 0
+ *             set; an unsolvable puzzle gets a record of zeros
+ *
+ * Records are mapped in segments of whole records, so a corpus may exceed the
+ * 2 GB a single map can hold. Reads use absolute gets only, any number of
+ * threads can share one corpus, and puzzle() decodes into the caller's array
+ * without allocating.
+ *
+ * Usage: java PuzzleCorpus convert <text> <corpus> [-solve]
+ *        java PuzzleCorpus solve <corpus> [-threads n]
+ *
+ * convert reads the text file line by line: a line of 81 cells is a puzzle,
+ * the one-line format BatchSolver reads, and 9 consecutive lines of 9 cells
+ * are one, the boardfile format ('0' or '.' for a blank, trailing whitespace
+ * allowed either way). Blank lines and lines starting with '#' are skipped.
+ * Any other line, and a boardfile cut short by one, is left out and reported
+ * on stderr with its line number, so one bad line never shifts the puzzles
+ * after it.
+ */
+public class PuzzleCorpus {
+
+	static final int MAGIC = 'S' << 24 | 'U' << 16 | 'D' << 8 | '4';
+	static final int VERSION = 1;
+	static final int HAS_SOLUTIONS = 1;
+	static final int HEADER = 16;
+	static final int SIZE = SudokuTopology.STANDARD.size;
+	static final int CELLS = SudokuTopology.STANDARD.cells;
+	static final int RECORD = (CELLS + 1) / 2;
+
+	// records per mapped segment, the largest count that fits one map
+	static final int SEGMENT = Integer.MAX_VALUE / RECORD;
+
+	private final long count;
+	private final boolean solutions;
+	private final MappedByteBuffer puzzleSegments[];
+	private final MappedByteBuffer solutionSegments[];
+
+	/* A half-open range of puzzle indexes [from, to) */
+	public static final class Range {
+		public final long from;
+		public final long to;
+
+		Range(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public long size() {
+			return to - from;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + from + ", " + to + ")";
+		}
+	}
+
+	private PuzzleCorpus(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0)
+			;
+		header.flip();
+		if (header.remaining() < HEADER || header.getInt(0) != MAGIC)
+			throw new IOException("not a puzzle corpus");
+		if (header.get(4) != VERSION)
+			throw new IOException("unsupported corpus version " + header.get(4));
+
+		count = header.getLong(8);
+		solutions = (header.get(5) & HAS_SOLUTIONS) != 0;
+		long expected = HEADER + count * RECORD * (solutions ? 2 : 1);
+		if (count < 0 || channel.size() < expected)
+			throw new IOException("corpus truncated: " + channel.size() + " bytes, " + expected + " expected");
+
+		puzzleSegments = map(channel, HEADER);
+		solutionSegments = solutions ? map(channel, HEADER + count * RECORD) : null;
+	}
+
+	private MappedByteBuffer[] map(FileChannel channel, long offset) throws IOException {
+		MappedByteBuffer segments[] = new MappedByteBuffer[(int) ((count + SEGMENT - 1) / SEGMENT)];
+		for (int i = 0; i < segments.length; i++) {
+			long records = Math.min(SEGMENT, count - (long) i * SEGMENT);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + (long) i * SEGMENT * RECORD,
+					records * RECORD);
+		}
+		return segments;
+	}
+
+	/* The maps outlive the channel, nothing is left open */
+	public static PuzzleCorpus open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new PuzzleCorpus(channel);
+		}
+	}
+
+	public long size() {
+		return count;
+	}
+
+	public boolean hasSolutions() {
+		return solutions;
+	}
+
+	/* Decodes puzzle index into values (81 cells, row-major, 0 = blank) */
+	public void puzzle(long index, int values[]) {
+		decode(puzzleSegments, index, values);
+	}
+
+	/* Decodes the stored solution of puzzle index, all zeros if it had none */
+	public void solution(long index, int values[]) {
+		if (!solutions)
+			throw new IllegalStateException("corpus has no solutions");
+		decode(solutionSegments, index, values);
+	}
+
+	private void decode(MappedByteBuffer segments[], long index, int values[]) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("puzzle " + index + " of " + count);
+		MappedByteBuffer segment = segments[(int) (index / SEGMENT)];
+		int at = (int) (index % SEGMENT) * RECORD;
+		for (int i = 0; i < CELLS - 1; i += 2) {
+			int b = segment.get(at++);
+			values[i] = b >> 4 & 0xF;
+			values[i + 1] = b & 0xF;
+		}
+		values[CELLS - 1] = segment.get(at) >> 4 & 0xF;
+	}
+
+	/* At most parts ranges of near equal size covering every puzzle */
+	public Range[] split(int parts) {
+		parts = (int) Math.max(1, Math.min(parts, count));
+		Range ranges[] = new Range[parts];
+		for (int i = 0; i < parts; i++) {
+			ranges[i] = new Range(count * i / parts, count * (i + 1) / parts);
+		}
+		return ranges;
+	}
+
+	static void encode(int values[], byte record[]) {
+		for (int i = 0; i < CELLS - 1; i += 2) {
+			record[i / 2] = (byte) (values[i] << 4 | values[i + 1]);
+		}
+		record[RECORD - 1] = (byte) (values[CELLS - 1] << 4);
+	}
+
+	/*
+	 * Converts a text file to a corpus, streaming: memory does not grow with
+	 * the number of puzzles. With solve, the written puzzles are mapped back
+	 * and solved into the solution section. Returns the puzzle count; lines
+	 * that hold no puzzle are reported on stderr and left out.
+	 */
+	public static long convert(Path text, Path corpus, boolean solve) throws IOException {
+		long count = 0;
+		long rejected = 0;
+		try (BufferedReader in = Files.newBufferedReader(text, StandardCharsets.US_ASCII);
+				ResultWriter out = ResultWriter.toFile(corpus, 0)) {
+			out.write(header(0, 0), 0, HEADER);
+
+			int puzzle[] = new int[CELLS];
+			int values[] = new int[CELLS];
+			int row[] = new int[SIZE];
+			byte record[] = new byte[RECORD];
+			int rows = 0;       // boardfile rows read so far
+			long boardStart = 0; // line of the first of them
+			long number = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				number++;
+				int length = BitBoard.trimmedLength(line);
+				if (length == 0 || line.charAt(0) == '#')
+					continue;
+
+				boolean boardRow = BatchSolver.parse(line, row);
+				if (rows > 0 && !boardRow) {
+					System.err.println(text + ":" + boardStart + ": board of " + rows + " rows, left out");
+					rejected++;
+					rows = 0;
+				}
+
+				if (boardRow) {
+					if (rows == 0)
+						boardStart = number;
+					System.arraycopy(row, 0, values, rows * SIZE, SIZE);
+					if (++rows == SIZE) {
+						encode(values, record);
+						out.write(record, 0, RECORD);
+						count++;
+						rows = 0;
+					}
+				} else if (BatchSolver.parse(line, puzzle)) {
+					encode(puzzle, record);
+					out.write(record, 0, RECORD);
+					count++;
+				} else {
+					System.err.println(text + ":" + number + ": not a puzzle, left out: "
+							+ (length > 100 ? line.substring(0, 100) + "..." : line.substring(0, length)));
+					rejected++;
+				}
+			}
+			if (rows > 0) {
+				System.err.println(text + ":" + boardStart + ": board of " + rows
+						+ " rows at the end of the file, left out");
+				rejected++;
+			}
+		}
+		if (rejected > 0)
+			System.err.println(text + ": " + rejected + " lines or boards left out");
+
+		writeHeader(corpus, count, 0);
+		if (solve) {
+			appendSolutions(corpus);
+			writeHeader(corpus, count, HAS_SOLUTIONS); // only once they are all there
+		}
+		return count;
+	}
+
+	private static void writeHeader(Path corpus, long count, int flags) throws IOException {
+		try (FileChannel channel = FileChannel.open(corpus, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(header(count, flags)), 0);
+		}
+	}
+
+	private static byte[] header(long count, int flags) {
+		return ByteBuffer.allocate(HEADER).putInt(MAGIC).put((byte) VERSION).put((byte) flags).putShort((short) 0)
+				.putLong(count).array();
+	}
+
+	private static void appendSolutions(Path path) throws IOException {
+		PuzzleCorpus corpus = open(path);
+		BitBoard b = new BitBoard();
+		BitSolver solver = new BitSolver();
+		int values[] = new int[CELLS];
+		byte record[] = new byte[RECORD];
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+				ResultWriter out = new ResultWriter(channel.position(HEADER + corpus.count * RECORD), false,
+						ResultWriter.DEFAULT_CAPACITY, 0)) {
+			for (long i = 0; i < corpus.count; i++) {
+				corpus.puzzle(i, values);
+				if (b.load(values) && solver.solve(b)) {
+					encode(b.values, record);
+				} else {
+					Arrays.fill(record, (byte) 0);
+				}
+				out.write(record, 0, RECORD);
+			}
+		}
+	}
+
+	/* Solves a range, checking against the stored solutions when there are some; returns the failures */
+	long solve(Range range, BitBoard b, BitSolver solver) {
+		int values[] = new int[CELLS];
+		int expected[] = new int[CELLS];
+		long failures = 0;
+
+		for (long i = range.from; i < range.to; i++) {
+			puzzle(i, values);
+			if (!b.load(values) || !solver.solve(b)) {
+				failures++;
+				continue;
+			}
+			if (solutions) {
+				solution(i, expected);
+				for (int cell = 0; cell < CELLS; cell++) {
+					if (b.values[cell] != expected[cell]) {
+						failures++;
+						break;
+					}
+				}
+			}
+		}
+		return failures;
+	}
+
+	public static void main(String ar[]) throws Exception {
+
+		if (ar.length >= 3 && ar[0].equals("convert")) {
+			long start = System.nanoTime();
+			boolean solve = ar.length > 3 && ar[3].equals("-solve");
+			long count = convert(Paths.get(ar[1]), Paths.get(ar[2]), solve);
+			System.err.println(count + " puzzles converted in " + (System.nanoTime() - start) / 1000000 + " ms");
+			return;
+		}
+		if (ar.length < 2 || !ar[0].equals("solve")) {
+			System.err.println("usage: java PuzzleCorpus convert <text> <corpus> [-solve]");
+			System.err.println("       java PuzzleCorpus solve <corpus> [-threads n]");
+			return;
+		}
+
+		int threads = ar.length > 3 && ar[2].equals("-threads") ? Integer.parseInt(ar[3])
+				: Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		PuzzleCorpus corpus = open(Paths.get(ar[1]));
+		long opened = System.nanoTime() - start;
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> results = new ArrayList<>();
+		for (Range range : corpus.split(threads)) {
+			results.add(pool.submit(() -> corpus.solve(range, new BitBoard(), new BitSolver())));
+		}
+		long failures = 0;
+		try {
+			for (Future<Long> result : results)
+				failures += result.get();
+		} finally {
+			pool.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.err.println(corpus.size() + " puzzles, " + failures + (corpus.hasSolutions() ? " wrong or" : "")
+				+ " unsolved, opened in " + opened / 1000 + " us, " + elapsed / 1000000 + " ms ("
+				+ (long) (corpus.size() * 1e9 / elapsed) + " puzzles/s)");
+	}
+}
@@ -0,0 +1,223 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Generates puzzles with a unique solution and a chosen difficulty.
+ *
+ * A full grid is made by filling the three diagonal boxes with random
+ * permutations and solving the rest. Givens are then removed in random order,
+ * each removal is kept only if the puzzle still has exactly one solution and
+ * does not grade above the target. A finished puzzle that grades below the
+ * target is thrown away and the next grid is tried.
+ *
+ * Difficulty is graded from the backtracks BitSolver.solve (forward checking
+ * with MRV) needs: none is easy, under HARD_BACKTRACKS is medium, the rest hard.
+ *
+ * Puzzle i is generated from its own SplittableRandom seeded from (seed, i), so
+ * the output for a given seed is the same whatever the number of threads.
+ *
+ * Usage: java PuzzleGenerator <count> <easy|medium|hard> [-seed n] [-threads n] [-boardfiles dir]
+ *
+ * Without -boardfiles, puzzles are written to stdout one line each. With it,
+ * every puzzle gets its own 9-line file dir/<level><n>, the format Sudoku reads.
+ */
+public class PuzzleGenerator {
+
+	static final int HARD_BACKTRACKS = 200;
+	static final int CHUNK = 64;
+
+	private final BitSolver solver = new BitSolver();
+	private final BitBoard board = new BitBoard();
+
+	static class Puzzle {
+		final int givens[];
+		final int solution[];
+		final SudokuAlgorithms.levels level;
+		final long nodes;
+		final long backtracks;
+
+		Puzzle(int givens[], int solution[], SudokuAlgorithms.levels level, long nodes, long backtracks) {
+			this.givens = givens;
+			this.solution = solution;
+			this.level = level;
+			this.nodes = nodes;
+			this.backtracks = backtracks;
+		}
+	}
+
+	static SudokuAlgorithms.levels levelOf(long backtracks) {
+		if (backtracks == 0)
+			return SudokuAlgorithms.levels.easy;
+		if (backtracks < HARD_BACKTRACKS)
+			return SudokuAlgorithms.levels.medium;
+		return SudokuAlgorithms.levels.hard;
+	}
+
+	/* Grades a puzzle by solving it, the solver's stats hold the nodes and backtracks used */
+	private SudokuAlgorithms.levels grade(int puzzle[]) {
+		board.load(puzzle);
+		solver.resetStats();
+		solver.solve(board);
+		return levelOf(solver.stats.backtracks);
+	}
+
+	private int[] randomGrid(SplittableRandom random) {
+		SudokuTopology topology = SudokuTopology.STANDARD;
+		int grid[] = new int[topology.cells];
+
+		for (int box = 0; box < topology.size; box += topology.order + 1) {
+			int cells[] = topology.boxes[box];
+			for (int i = 0; i < cells.length; i++) {
+				int j = random.nextInt(i + 1);
+				grid[cells[i]] = grid[cells[j]];
+				grid[cells[j]] = i + 1;
+			}
+		}
+		board.load(grid);
+		solver.solve(board);
+		return board.values.clone();
+	}
+
+	public Puzzle generate(long seed, SudokuAlgorithms.levels target) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int order[] = new int[board.cells];
+
+		while (true) {
+			int solution[] = randomGrid(random);
+			int puzzle[] = solution.clone();
+
+			for (int i = 0; i < order.length; i++) {
+				int j = random.nextInt(i + 1);
+				order[i] = order[j];
+				order[j] = i;
+			}
+
+			for (int cell : order) {
+				int val = puzzle[cell];
+				puzzle[cell] = 0;
+				board.load(puzzle);
+				if (solver.countSolutions(board, 2, null) != 1
+						|| (target != SudokuAlgorithms.levels.hard && grade(puzzle).compareTo(target) > 0))
+					puzzle[cell] = val;
+			}
+
+			if (grade(puzzle) == target)
+				return new Puzzle(puzzle, solution, target, solver.stats.nodes, solver.stats.backtracks);
+		}
+	}
+
+	/* Seed of puzzle index, spread so neighbouring indexes get unrelated streams */
+	static long seedOf(long seed, long index) {
+		return new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L)).nextLong();
+	}
+
+	static void appendLine(StringBuilder sb, int puzzle[]) {
+		for (int val : puzzle) {
+			sb.append((char) ('0' + val));
+		}
+		sb.append('\n');
+	}
+
+	static void writeBoardFile(File file, int puzzle[]) throws IOException {
+		StringBuilder sb = new StringBuilder(90);
+		for (int row = 0; row < 9; row++) {
+			for (int col = 0; col < 9; col++) {
+				sb.append((char) ('0' + puzzle[row * 9 + col]));
+			}
+			sb.append('\n');
+		}
+		try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write(sb.toString());
+		}
+	}
+
+	/* Writes a chunk and returns the number of puzzles written so far */
+	private static int write(Puzzle chunk[], int written, File dir, Writer out) throws IOException {
+		StringBuilder sb = new StringBuilder(chunk.length * (SudokuTopology.STANDARD.cells + 1));
+		for (Puzzle p : chunk) {
+			written++;
+			if (dir != null)
+				writeBoardFile(new File(dir, p.level.toString() + written), p.givens);
+			else
+				appendLine(sb, p.givens);
+		}
+		out.write(sb.toString());
+		return written;
+	}
+
+	public static void main(String ar[]) throws IOException, InterruptedException, ExecutionException {
+
+		if (ar.length < 2) {
+			System.err.println("usage: java PuzzleGenerator <count> <easy|medium|hard> [-seed n] [-threads n] [-boardfiles dir]");
+			return;
+		}
+
+		int count = Integer.parseInt(ar[0]);
+		SudokuAlgorithms.levels target = SudokuAlgorithms.levels.valueOf(ar[1]);
+		long seed = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+		File dir = null;
+
+		for (int i = 2; i + 1 < ar.length; i += 2) {
+			switch (ar[i]) {
+			case "-seed":
+				seed = Long.parseLong(ar[i + 1]);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(ar[i + 1]);
+				break;
+			case "-boardfiles":
+				dir = new File(ar[i + 1]);
+				dir.mkdirs();
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option " + ar[i]);
+			}
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ThreadLocal<PuzzleGenerator> generators = ThreadLocal.withInitial(PuzzleGenerator::new);
+		ArrayDeque<Future<Puzzle[]>> inFlight = new ArrayDeque<>();
+		int window = threads * 4;
+		long runSeed = seed;
+		int written = 0;
+		long start = System.nanoTime();
+
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16)) {
+			for (int from = 0; from < count; from += CHUNK) {
+				// At most window chunks in flight, finished ones are written in order
+				if (inFlight.size() == window)
+					written = write(inFlight.poll().get(), written, dir, out);
+
+				int first = from, last = Math.min(count, from + CHUNK);
+				inFlight.add(pool.submit(() -> {
+					PuzzleGenerator generator = generators.get();
+					Puzzle chunk[] = new Puzzle[last - first];
+					for (int i = first; i < last; i++) {
+						chunk[i - first] = generator.generate(seedOf(runSeed, i), target);
+					}
+					return chunk;
+				}));
+			}
+			while (!inFlight.isEmpty())
+				written = write(inFlight.poll().get(), written, dir, out);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		long elapsed = System.nanoTime() - start;
+		System.err.println(written + " " + target + " puzzles in " + elapsed / 1000000 + " ms ("
+				+ (long) (written * 1e9 / elapsed) + " puzzles/s)");
+	}
+}
@@ -0,0 +1,168 @@
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Writes boards as ASCII straight into one reusable byte buffer and drains it
+ * to a single channel, a results file opened once or stdout.
+ *
+ * Nothing is encoded through a String or a Writer: values are written digit by
+ * digit. The buffer drains when it is full, and, when group is above 0, after
+ * every group boards (records), so a reader following the output sees whole
+ * groups; with group 0 it only drains when full or on flush().
+ *
+ * Not thread safe, one writer per output.
+ */
+public class ResultWriter implements Closeable {
+
+	static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final WritableByteChannel channel;
+	private final boolean closeChannel;
+	private final ByteBuffer buffer;
+	private final int group;
+	private int pending; // records written since the last drain
+	private long records;
+	private long bytes;
+
+	public ResultWriter(WritableByteChannel channel, boolean closeChannel, int capacity, int group) {
+		this.channel = channel;
+		this.closeChannel = closeChannel;
+		this.buffer = ByteBuffer.allocateDirect(capacity);
+		this.group = group;
+	}
+
+	/* Truncates or creates the file */
+	public static ResultWriter toFile(Path path, int group) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		return new ResultWriter(channel, true, DEFAULT_CAPACITY, group);
+	}
+
+	/* stdout is flushed but left open on close() */
+	public static ResultWriter toStdout(int group) {
+		return new ResultWriter(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), false,
+				DEFAULT_CAPACITY, group);
+	}
+
+	private void ensure(int n) throws IOException {
+		if (buffer.remaining() < n)
+			drain();
+		if (buffer.remaining() < n)
+			throw new IllegalArgumentException(n + " bytes do not fit a " + buffer.capacity() + " byte buffer");
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		bytes += buffer.remaining();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+		pending = 0;
+	}
+
+	/* Value right aligned to width, with no intermediate String */
+	private void putPadded(int val, int width) {
+		int digits = digits(val);
+		for (int i = digits; i < width; i++)
+			buffer.put((byte) ' ');
+		int divisor = 1;
+		for (int i = 1; i < digits; i++)
+			divisor *= 10;
+		for (; divisor > 0; divisor /= 10)
+			buffer.put((byte) ('0' + val / divisor % 10));
+	}
+
+	private static int digits(int val) {
+		int digits = 1;
+		while (val >= 10) {
+			val /= 10;
+			digits++;
+		}
+		return digits;
+	}
+
+	/* Ends one record, draining once a whole group is buffered */
+	private void endRecord() throws IOException {
+		records++;
+		if (group > 0 && ++pending >= group)
+			drain();
+	}
+
+	/* ASCII text as is, no record counted */
+	public ResultWriter write(CharSequence text) throws IOException {
+		ensure(text.length());
+		for (int i = 0; i < text.length(); i++)
+			buffer.put((byte) text.charAt(i));
+		return this;
+	}
+
+	/* Bytes produced elsewhere, as one record: e.g. a chunk of solved lines */
+	public void write(byte text[], int offset, int length) throws IOException {
+		if (length > buffer.capacity()) {
+			drain();
+			bytes += length;
+			ByteBuffer wrapped = ByteBuffer.wrap(text, offset, length);
+			while (wrapped.hasRemaining())
+				channel.write(wrapped);
+		} else {
+			ensure(length);
+			buffer.put(text, offset, length);
+		}
+		endRecord();
+	}
+
+	/* The board as Sudoku.printBoard() lays it out */
+	public void writeBoard(Sudoku s) throws IOException {
+		int size = s.size, width = digits(size);
+		ensure(size * (size * (width + 1) + 1));
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				putPadded(s.board[row][col].val, width);
+				buffer.put((byte) ' ');
+			}
+			buffer.put((byte) '\n');
+		}
+		endRecord();
+	}
+
+	/* One line of 81 digits, the BatchSolver format; 9x9 only */
+	public void writeLine(BitBoard b) throws IOException {
+		ensure(b.cells + 1);
+		for (int i = 0; i < b.cells; i++)
+			buffer.put((byte) ('0' + b.values[i]));
+		buffer.put((byte) '\n');
+		endRecord();
+	}
+
+	public void flush() throws IOException {
+		if (buffer.position() > 0)
+			drain();
+	}
+
+	public long records() {
+		return records;
+	}
+
+	/* Bytes handed to the channel so far */
+	public long bytes() {
+		return bytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if (closeChannel)
+				channel.close();
+		}
+	}
+}
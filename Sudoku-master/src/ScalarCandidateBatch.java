@@ -0,0 +1,76 @@
+/*
+ * CandidateBatch sweeps one board at a time, for JVMs without the vector module.
+ */
+class ScalarCandidateBatch extends CandidateBatch {
+
+	ScalarCandidateBatch(int boards) {
+		super(boards);
+	}
+
+	private short candidates(int cell, int b) {
+		if (bits[cell * lanes + b] != 0)
+			return 0;
+		return (short) (~(rows[TOPOLOGY.rowOf[cell] * lanes + b] | cols[TOPOLOGY.colOf[cell] * lanes + b]
+				| boxes[TOPOLOGY.boxOf[cell] * lanes + b]) & ALL);
+	}
+
+	private void place(int cell, int b, short bit) {
+		rows[TOPOLOGY.rowOf[cell] * lanes + b] |= bit;
+		cols[TOPOLOGY.colOf[cell] * lanes + b] |= bit;
+		boxes[TOPOLOGY.boxOf[cell] * lanes + b] |= bit;
+		bits[cell * lanes + b] = bit;
+	}
+
+	@Override
+	boolean nakedSingles() {
+		boolean changed = false;
+		for (int cell = 0; cell < CELLS; cell++) {
+			for (int b = 0; b < lanes; b++) {
+				if (bits[cell * lanes + b] != 0)
+					continue;
+				short candidates = candidates(cell, b);
+				if (candidates == 0) {
+					dead[b] = -1;
+				} else if ((candidates & (candidates - 1)) == 0) {
+					place(cell, b, candidates);
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+
+	@Override
+	boolean hiddenSingles() {
+		boolean changed = false;
+		for (int unit[] : TOPOLOGY.units) {
+			for (int b = 0; b < lanes; b++) {
+				int once = 0, twice = 0, placed = 0;
+				for (int cell : unit) {
+					int candidates = candidates(cell, b);
+					twice |= once & candidates;
+					once |= candidates;
+					placed |= bits[cell * lanes + b];
+				}
+				if ((once | placed) != ALL)
+					dead[b] = -1;
+				int hidden = once & ~twice;
+				if (hidden == 0)
+					continue;
+
+				for (int cell : unit) {
+					int h = candidates(cell, b) & hidden;
+					if (h == 0)
+						continue;
+					if ((h & (h - 1)) != 0) {
+						dead[b] = -1; // two digits need this cell
+						continue;
+					}
+					place(cell, b, (short) h);
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+}
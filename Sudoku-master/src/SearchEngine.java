@@ -0,0 +1,240 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/*
+ * MAC search (the one BitSolver.mac runs) on an explicit stack instead of
+ * recursion, so it can stop between any two nodes and carry on later, on
+ * another thread or after a trip through a checkpoint.
+ *
+ * Every level of the search is a frame in three preallocated arrays: the cell
+ * branched on, the candidates not tried yet and the trail mark taken before
+ * the first of them. The assigned value itself is on the board. Nothing is
+ * allocated per node, and the depth is bounded by the cells, not by the Java
+ * stack, which a 25x25 board can take a long way down.
+ *
+ * start() loads a puzzle, resume() searches until the board is solved, found
+ * unsatisfiable, or paused: by pause() from any thread, by the node slice it
+ * was given, or by the cancellation token, a SolveBudget for a time slice.
+ * A paused engine keeps its whole state and the next resume() goes on from
+ * the node it stopped at.
+ *
+ * Checkpoint layout, all big endian:
+ *   header  20 bytes: magic "SUDC", version, box order, status, a reserved
+ *           byte, nodes searched so far as a long, the depth as an int
+ *   givens  one byte per cell, the puzzle as start() got it
+ *   frames  depth times: cell as a short, its value as a byte and the
+ *           candidates left to try in (size + 7) / 8 bytes
+ *
+ * A 9x9 search fits in 101 bytes plus 5 per level. restore() replays the
+ * assignments from the givens, propagation is deterministic, so the board
+ * comes back exactly as it was.
+ */
+public class SearchEngine {
+
+	static final int MAGIC = 'S' << 24 | 'U' << 16 | 'D' << 8 | 'C';
+	static final int VERSION = 1;
+	static final int HEADER = 20;
+
+	public enum Status {
+		PAUSED, // more search to do, resume() carries on
+		SOLVED,
+		UNSATISFIABLE
+	}
+
+	final SudokuTopology topology;
+	private final BitBoard board;
+	private final CancellationToken token;
+	final SearchStats stats;
+
+	private final int givens[];
+	private final int frameCell[];
+	private final long frameLeft[];
+	private final int frameMark[];
+	private int depth;
+
+	private Status status = Status.UNSATISFIABLE; // nothing loaded
+	private long nodes;
+	private volatile boolean pauseRequested;
+
+	public SearchEngine(SudokuTopology topology) {
+		this(topology, null, new SearchStats());
+	}
+
+	/* Counts into stats, which can be shared with other solvers of the same thread */
+	public SearchEngine(SudokuTopology topology, CancellationToken token, SearchStats stats) {
+		this.topology = topology;
+		this.board = new BitBoard(topology);
+		this.token = token;
+		this.stats = stats;
+		givens = new int[topology.cells];
+		frameCell = new int[topology.cells];
+		frameLeft = new long[topology.cells];
+		frameMark = new int[topology.cells];
+	}
+
+	/*
+	 * Loads a puzzle (values in row-major order, 0 = blank) and propagates it,
+	 * ready for resume(). Returns false if a value is out of range or two givens clash.
+	 */
+	public boolean start(int puzzle[]) {
+		depth = 0;
+		nodes = 0;
+		if (puzzle.length != topology.cells || !board.load(puzzle)) {
+			status = Status.UNSATISFIABLE;
+			return false;
+		}
+		System.arraycopy(puzzle, 0, givens, 0, givens.length);
+		status = board.propagateAll() ? Status.PAUSED : Status.UNSATISFIABLE;
+		return true;
+	}
+
+	public Status status() {
+		return status;
+	}
+
+	/* Search nodes since start(), across pauses and checkpoints */
+	public long nodes() {
+		return nodes;
+	}
+
+	/* Levels on the stack */
+	public int depth() {
+		return depth;
+	}
+
+	/* Current values in row-major order, 0 = blank; the solution once SOLVED */
+	public void copyTo(int values[]) {
+		System.arraycopy(board.values, 0, values, 0, topology.cells);
+	}
+
+	/* Writes the values as ASCII digits from pos, returns the position after them */
+	public int appendTo(byte buf[], int pos) {
+		return board.appendTo(buf, pos);
+	}
+
+	/* Makes the running resume() return PAUSED at its next node; callable from any thread */
+	public void pause() {
+		pauseRequested = true;
+	}
+
+	public Status resume() {
+		return resume(Long.MAX_VALUE);
+	}
+
+	/* Searches at most maxNodes more nodes, then pauses */
+	public Status resume(long maxNodes) {
+		if (status != Status.PAUSED)
+			return status;
+		if (SearchStats.ENABLED)
+			board.stats = stats;
+
+		long slice = 0;
+		while (true) {
+			int cell = BitSolver.findMRVCell(board);
+			if (cell < 0)
+				return status = Status.SOLVED;
+			if (pauseRequested || slice++ == maxNodes || token != null && token.isCancelled()) {
+				pauseRequested = false;
+				return Status.PAUSED;
+			}
+			nodes++;
+			stats.nodes++;
+			if (SearchStats.ENABLED)
+				stats.descend();
+
+			frameCell[depth] = cell;
+			frameLeft[depth] = board.domains[cell];
+			frameMark[depth] = board.mark();
+			depth++;
+
+			// a level that runs out of values hands the backtrack to the one above
+			while (!next()) {
+				board.values[frameCell[--depth]] = 0;
+				if (SearchStats.ENABLED)
+					stats.ascend();
+				if (depth == 0)
+					return status = Status.UNSATISFIABLE;
+				board.undo(frameMark[depth - 1]);
+				stats.backtracks++;
+			}
+		}
+	}
+
+	/* Assigns the next candidate of the top frame that survives propagation, false when none is left */
+	private boolean next() {
+		int top = depth - 1, cell = frameCell[top];
+		while (frameLeft[top] != 0) {
+			long bit = frameLeft[top] & -frameLeft[top];
+			frameLeft[top] ^= bit;
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
+			if (board.assign(cell, Long.numberOfTrailingZeros(bit) + 1))
+				return true;
+			board.undo(frameMark[top]);
+			stats.backtracks++;
+		}
+		return false;
+	}
+
+	/* The state between two resume() calls, see the layout above */
+	public byte[] checkpoint() {
+		int cells = topology.cells, maskBytes = (topology.size + 7) / 8;
+		ByteBuffer out = ByteBuffer.allocate(HEADER + cells + depth * (3 + maskBytes));
+		out.putInt(MAGIC).put((byte) VERSION).put((byte) topology.order).put((byte) status.ordinal()).put((byte) 0);
+		out.putLong(nodes).putInt(depth);
+		for (int i = 0; i < cells; i++)
+			out.put((byte) givens[i]);
+		for (int f = 0; f < depth; f++) {
+			out.putShort((short) frameCell[f]).put((byte) board.values[frameCell[f]]);
+			for (int b = maskBytes - 1; b >= 0; b--)
+				out.put((byte) (frameLeft[f] >>> 8 * b));
+		}
+		return out.array();
+	}
+
+	/* Back to a checkpoint of an engine for the same board size */
+	public void restore(byte checkpoint[]) {
+		ByteBuffer in = ByteBuffer.wrap(checkpoint);
+		try {
+			if (in.getInt() != MAGIC)
+				throw new IllegalArgumentException("not a search checkpoint");
+			if (in.get() != VERSION)
+				throw new IllegalArgumentException("unsupported checkpoint version " + checkpoint[4]);
+			int order = in.get();
+			if (order != topology.order)
+				throw new IllegalArgumentException("checkpoint of a " + order * order + "x" + order * order
+						+ " board, this engine is " + topology.size + "x" + topology.size);
+			Status saved = Status.values()[in.get()];
+			in.get();
+			long savedNodes = in.getLong();
+			int savedDepth = in.getInt();
+
+			int puzzle[] = new int[topology.cells];
+			for (int i = 0; i < puzzle.length; i++)
+				puzzle[i] = in.get();
+			if (!start(puzzle) || savedDepth < 0 || savedDepth > topology.cells
+					|| saved != Status.UNSATISFIABLE && status == Status.UNSATISFIABLE)
+				throw new IllegalArgumentException("checkpoint does not replay");
+
+			int maskBytes = (topology.size + 7) / 8;
+			for (int f = 0; f < savedDepth; f++) {
+				int cell = in.getShort() & 0xFFFF, val = in.get();
+				long left = 0;
+				for (int b = 0; b < maskBytes; b++)
+					left = left << 8 | in.get() & 0xFF;
+				if (cell >= topology.cells || val < 1 || val > topology.size || board.values[cell] != 0)
+					throw new IllegalArgumentException("checkpoint does not replay");
+				frameCell[f] = cell;
+				frameLeft[f] = left;
+				frameMark[f] = board.mark();
+				if (!board.assign(cell, val))
+					throw new IllegalArgumentException("checkpoint does not replay");
+				depth = f + 1;
+			}
+			status = saved;
+			nodes = savedNodes;
+		} catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("checkpoint truncated");
+		}
+	}
+}
@@ -0,0 +1,111 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Search counters of one solver, written by the thread running it.
+ *
+ * nodes and backtracks are always counted, puzzle grading depends on them. The
+ * rest (wipeouts, AC-3 revisions, values tried, depth) are only counted when the
+ * JVM runs with -Dsudoku.stats=true: ENABLED is a static final, so with it off
+ * the JIT drops those increments from the hot loops altogether.
+ *
+ * snapshot() freezes the counters; SudokuAlgorithms.measure() takes one per
+ * solve, adds it to the per-algorithm totals() and emits it as a JFR event.
+ */
+public class SearchStats {
+
+	static final boolean ENABLED = Boolean.getBoolean("sudoku.stats");
+
+	private static final Map<String, Snapshot> TOTALS = new ConcurrentHashMap<>();
+
+	long nodes;        // decision points entered
+	long backtracks;   // values tried and undone without a solution
+	long wipeouts;     // domains emptied by propagation
+	long revisions;    // AC-3 arc revisions that removed a value
+	long valuesTried;  // values assigned at decision points
+	int depth;
+	int maxDepth;
+
+	public void reset() {
+		nodes = 0;
+		backtracks = 0;
+		wipeouts = 0;
+		revisions = 0;
+		valuesTried = 0;
+		depth = 0;
+		maxDepth = 0;
+	}
+
+	/* One level deeper into the search tree */
+	void descend() {
+		if (++depth > maxDepth)
+			maxDepth = depth;
+	}
+
+	void ascend() {
+		depth--;
+	}
+
+	public Snapshot snapshot(String algorithm, boolean solved, long nanos) {
+		return new Snapshot(algorithm, solved ? 1 : 0, 1, nanos, nodes, backtracks, wipeouts, revisions, valuesTried,
+				maxDepth);
+	}
+
+	/* Adds a finished solve to the totals of its algorithm */
+	static void record(Snapshot s) {
+		TOTALS.merge(s.algorithm, s, Snapshot::plus);
+	}
+
+	/* Everything recorded so far, one entry per algorithm */
+	public static Map<String, Snapshot> totals() {
+		return Collections.unmodifiableMap(new TreeMap<>(TOTALS));
+	}
+
+	/* Immutable counters of one solve, or the sum of several */
+	static final class Snapshot {
+		final String algorithm;
+		final long solved;
+		final long solves;
+		final long nanos;
+		final long nodes;
+		final long backtracks;
+		final long wipeouts;
+		final long revisions;
+		final long valuesTried;
+		final int maxDepth;
+
+		Snapshot(String algorithm, long solved, long solves, long nanos, long nodes, long backtracks, long wipeouts,
+				long revisions, long valuesTried, int maxDepth) {
+			this.algorithm = algorithm;
+			this.solved = solved;
+			this.solves = solves;
+			this.nanos = nanos;
+			this.nodes = nodes;
+			this.backtracks = backtracks;
+			this.wipeouts = wipeouts;
+			this.revisions = revisions;
+			this.valuesTried = valuesTried;
+			this.maxDepth = maxDepth;
+		}
+
+		Snapshot plus(Snapshot o) {
+			return new Snapshot(algorithm, solved + o.solved, solves + o.solves, nanos + o.nanos, nodes + o.nodes,
+					backtracks + o.backtracks, wipeouts + o.wipeouts, revisions + o.revisions,
+					valuesTried + o.valuesTried, Math.max(maxDepth, o.maxDepth));
+		}
+
+		/* Average number of values tried at a decision point */
+		double valuesPerNode() {
+			return nodes == 0 ? 0 : (double) valuesTried / nodes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s solved %d/%d in %.3f ms: %d nodes, %d backtracks, %d wipeouts, %d revisions, "
+					+ "%.2f values/node, depth %d", algorithm, solved, solves, nanos / 1e6, nodes, backtracks, wipeouts,
+					revisions, valuesPerNode(), maxDepth);
+		}
+	}
+}
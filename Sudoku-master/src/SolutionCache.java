@@ -0,0 +1,229 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/*
+ * Caches solutions by canonical form, so a puzzle seen before, relabeled,
+ * transposed or with bands, stacks, rows or columns shuffled, is answered
+ * without a search.
+ *
+ * The canonical puzzle is the key and its solution is stored in canonical
+ * coordinates and digits; a hit maps it back through the transform of the
+ * incoming puzzle. The cache is a bounded LRU split into segments, each a
+ * LinkedHashMap in access order behind its own lock, so threads working on
+ * different puzzles rarely meet.
+ *
+ * Only 9x9 boards are canonicalized, other sizes go straight to the solver.
+ */
+public class SolutionCache {
+
+	static final int SEGMENTS = 16;
+
+	private final Segment segments[] = new Segment[SEGMENTS];
+	private final ThreadLocal<Canonicalizer> canonicalizers = ThreadLocal.withInitial(Canonicalizer::new);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder bypassed = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder canonicalNanos = new LongAdder();
+
+	private final class Segment extends LinkedHashMap<String, int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			if (size() <= capacity)
+				return false;
+			evictions.increment();
+			return true;
+		}
+	}
+
+	/* Holds at most capacity solutions, rounded up to a multiple of SEGMENTS */
+	public SolutionCache(int capacity) {
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+		}
+	}
+
+	private Segment segmentOf(String key) {
+		int h = key.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+
+	private static String keyOf(int canonical[]) {
+		char key[] = new char[canonical.length];
+		for (int i = 0; i < canonical.length; i++) {
+			key[i] = (char) ('0' + canonical[i]);
+		}
+		return new String(key);
+	}
+
+	/*
+	 * Solves s from the cache, or with solver on a miss. A solution the solver
+	 * finds is verified and cached for every puzzle isomorphic to s.
+	 */
+	public boolean solve(Sudoku s, Predicate<Sudoku> solver) {
+		if (s.topology != SudokuTopology.STANDARD) {
+			bypassed.increment();
+			return solver.test(s);
+		}
+
+		long start = System.nanoTime();
+		Canonicalizer canonicalizer = canonicalizers.get();
+		String key = keyOf(canonicalizer.canonicalize(s.values()));
+		Canonicalizer.Transform transform = canonicalizer.transform();
+		canonicalNanos.add(System.nanoTime() - start);
+
+		Segment segment = segmentOf(key);
+		int cached[];
+		synchronized (segment) {
+			cached = segment.get(key);
+		}
+		if (cached != null) {
+			hits.increment();
+			s.fillSolution(transform.fromCanonical(cached));
+			return true;
+		}
+
+		misses.increment();
+		if (!solver.test(s) || !s.isSolved())
+			return false;
+
+		int solution[] = transform.toCanonical(s.values());
+		synchronized (segment) {
+			segment.put(key, solution);
+		}
+		return true;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public double hitRate() {
+		long lookups = hits.sum() + misses.sum();
+		return lookups == 0 ? 0 : (double) hits.sum() / lookups;
+	}
+
+	/* Average time to canonicalize a puzzle, in microseconds */
+	public double canonicalMicros() {
+		long lookups = hits.sum() + misses.sum();
+		return lookups == 0 ? 0 : canonicalNanos.sum() / 1e3 / lookups;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d bypassed, %d cached, %.1f us/canonicalization",
+				hits(), misses(), 100 * hitRate(), evictions(), bypassed.sum(), size(), canonicalMicros());
+	}
+
+	/* Random symmetry of a 9x9 puzzle: relabeling, transposition, band/stack and row/column shuffles */
+	static int[] shuffle(int puzzle[], SplittableRandom random) {
+		int rows[] = randomLayout(random);
+		int cols[] = randomLayout(random);
+		int digits[] = new int[10];
+		for (int d = 1; d <= 9; d++) {
+			int j = 1 + random.nextInt(d);
+			digits[d] = digits[j];
+			digits[j] = d;
+		}
+		boolean transpose = random.nextBoolean();
+
+		int shuffled[] = new int[81];
+		for (int row = 0; row < 9; row++) {
+			for (int col = 0; col < 9; col++) {
+				int from = transpose ? cols[col] * 9 + rows[row] : rows[row] * 9 + cols[col];
+				shuffled[row * 9 + col] = digits[puzzle[from]];
+			}
+		}
+		return shuffled;
+	}
+
+	private static int[] randomLayout(SplittableRandom random) {
+		int bands[] = { 0, 1, 2 };
+		int layout[] = new int[9];
+		for (int i = 2; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = bands[i];
+			bands[i] = bands[j];
+			bands[j] = tmp;
+		}
+		for (int band = 0; band < 3; band++) {
+			int inner[] = { 0, 1, 2 };
+			for (int i = 2; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int tmp = inner[i];
+				inner[i] = inner[j];
+				inner[j] = tmp;
+			}
+			for (int i = 0; i < 3; i++)
+				layout[band * 3 + i] = bands[band] * 3 + inner[i];
+		}
+		return layout;
+	}
+
+	/*
+	 * Solves every boardfile and then random symmetries of them through the
+	 * cache, checking each answer against its own givens.
+	 * Usage: java SolutionCache [copies per puzzle] [capacity]
+	 */
+	public static void main(String ar[]) {
+		int copies = ar.length > 0 ? Integer.parseInt(ar[0]) : 100;
+		SolutionCache cache = new SolutionCache(ar.length > 1 ? Integer.parseInt(ar[1]) : 1024);
+		SudokuAlgorithms algo = new SudokuAlgorithms();
+		SplittableRandom random = new SplittableRandom(1);
+		int wrong = 0;
+
+		for (int copy = 0; copy <= copies; copy++) {
+			for (SudokuAlgorithms.levels level : SudokuAlgorithms.levels.values()) {
+				for (int number = 1; number <= 5; number++) {
+					int puzzle[] = new Sudoku(level.toString(), number).values();
+					if (copy > 0)
+						puzzle = shuffle(puzzle, random);
+
+					Sudoku s = new Sudoku(puzzle);
+					boolean solved = cache.solve(s, algo::maintainingArcConsistency);
+					int values[] = s.values();
+					for (int i = 0; i < 81; i++) {
+						if (puzzle[i] != 0 && values[i] != puzzle[i])
+							solved = false;
+					}
+					if (!solved || !s.isSolved())
+						wrong++;
+				}
+			}
+		}
+		System.out.println(cache);
+		System.out.println(wrong + " wrong answers");
+	}
+}
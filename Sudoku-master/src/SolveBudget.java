@@ -0,0 +1,58 @@
+/*
+ * A token that also runs out: after a wall-clock timeout, after a number of
+ * checks, or when a parent token shared by several solves is cancelled.
+ *
+ * Every solver already checks its token once per search node (annealing step,
+ * AC-3 revision), so the checks are the node budget and no solver loop needs
+ * to know about budgets. The clock is only read every CLOCK_INTERVAL checks.
+ *
+ * The counters are plain fields: a budget belongs to one solve on one thread,
+ * start() rearms it for the next. cancel() may still come from any thread.
+ */
+public class SolveBudget extends CancellationToken {
+
+	static final int CLOCK_INTERVAL = 1024;
+
+	private final long timeoutNanos;
+	private final long maxNodes;
+	private final CancellationToken parent;
+
+	private long deadline;
+	private long checks;
+	private boolean exhausted;
+
+	/* 0 means no limit, for the timeout as for the nodes; parent may be null */
+	public SolveBudget(long timeoutMillis, long maxNodes, CancellationToken parent) {
+		this.timeoutNanos = timeoutMillis * 1000000;
+		this.maxNodes = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+		this.parent = parent;
+		start();
+	}
+
+	/* Restarts the clock and the node count */
+	public void start() {
+		deadline = System.nanoTime() + timeoutNanos;
+		checks = 0;
+		exhausted = false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		if (exhausted)
+			return true;
+		if (++checks > maxNodes || super.isCancelled() || parent != null && parent.isCancelled()
+				|| timeoutNanos > 0 && (checks & (CLOCK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline > 0)
+			exhausted = true;
+		return exhausted;
+	}
+
+	@Override
+	public boolean stopped() {
+		return exhausted || super.stopped();
+	}
+
+	/* Checks made since start(): search nodes, annealing steps, revisions */
+	public long checks() {
+		return checks;
+	}
+}
@@ -0,0 +1,41 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * JFR event for one solve, committed by SudokuAlgorithms.measure(). Record with
+ * -XX:StartFlightRecording and -Dsudoku.stats=true to get the full counters,
+ * without the property only nodes and backtracks are filled in.
+ */
+@Name("sudoku.Solve")
+@Label("Sudoku Solve")
+@Category("Sudoku")
+@Description("Search counters of one solve")
+class SolveEvent extends Event {
+
+	@Label("Algorithm")
+	String algorithm;
+
+	@Label("Solved")
+	boolean solved;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Backtracks")
+	long backtracks;
+
+	@Label("Wipeouts")
+	long wipeouts;
+
+	@Label("AC-3 Revisions")
+	long revisions;
+
+	@Label("Values Tried")
+	long valuesTried;
+
+	@Label("Max Depth")
+	int maxDepth;
+}
@@ -0,0 +1,24 @@
+/*
+ * Outcome of one solve under a budget, with the counters gathered until it
+ * ended. A solver that stopped because its token or budget ran out proved
+ * nothing, so that is BUDGET_EXHAUSTED rather than UNSATISFIABLE.
+ */
+public class SolveResult {
+
+	public enum Status {
+		SOLVED, UNSATISFIABLE, BUDGET_EXHAUSTED
+	}
+
+	public final Status status;
+	public final SearchStats.Snapshot stats;
+
+	SolveResult(Status status, SearchStats.Snapshot stats) {
+		this.status = status;
+		this.stats = stats;
+	}
+
+	@Override
+	public String toString() {
+		return status + ": " + stats;
+	}
+}
@@ -0,0 +1,97 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Client of SolverService. send() and receive() may run on two threads, so
+ * requests can be pipelined; solve() is the one-at-a-time round trip.
+ *
+ * Reads and writes go straight to the channel with a buffer each, rather than
+ * through Channels streams, which would serialize a blocked read and a write.
+ *
+ * Usage: java SolverClient [-port n | -socket path] [puzzle ...]
+ * Without puzzles, lines are read from stdin; "stats" asks for the counters.
+ */
+public class SolverClient implements Closeable {
+
+	private final SocketChannel channel;
+	private final ByteBuffer in = ByteBuffer.allocate(1 << 16);
+	private final StringBuilder line = new StringBuilder();
+
+	public SolverClient(SocketAddress address) throws IOException {
+		channel = address instanceof UnixDomainSocketAddress ? SocketChannel.open(StandardProtocolFamily.UNIX)
+				: SocketChannel.open();
+		channel.connect(address);
+		in.flip();
+	}
+
+	/* Writes whole lines, '\n' separated, as they are */
+	public void send(ByteBuffer lines) throws IOException {
+		while (lines.hasRemaining())
+			channel.write(lines);
+	}
+
+	public void send(String request) throws IOException {
+		send(ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	/* Next response line, without its '\n' */
+	public String receive() throws IOException {
+		line.setLength(0);
+		while (true) {
+			while (in.hasRemaining()) {
+				byte ch = in.get();
+				if (ch == '\n')
+					return line.toString();
+				line.append((char) ch);
+			}
+			in.clear();
+			int n = channel.read(in);
+			in.flip();
+			if (n < 0)
+				throw new EOFException("service closed the connection");
+		}
+	}
+
+	public String solve(String puzzle) throws IOException {
+		send(puzzle);
+		return receive();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	public static void main(String ar[]) throws IOException {
+
+		try (SolverClient client = new SolverClient(SolverService.address(ar))) {
+			boolean given = false;
+			for (int i = 0; i < ar.length; i++) {
+				if (ar[i].equals("-port") || ar[i].equals("-socket")) {
+					i++;
+					continue;
+				}
+				System.out.println(client.solve(ar[i]));
+				given = true;
+			}
+			if (given)
+				return;
+
+			BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+			String request;
+			while ((request = stdin.readLine()) != null) {
+				if (!request.isEmpty())
+					System.out.println(client.solve(request));
+			}
+		}
+	}
+}
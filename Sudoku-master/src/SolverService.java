@@ -0,0 +1,529 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Resident solver on a local TCP port or Unix domain socket, so solves stop
+ * paying JVM startup and a cold JIT.
+ *
+ * Protocol: one puzzle per line, 81 characters ('0' or '.' for a blank).
+ * Every line gets one line back, in request order per connection: the 81
+ * digits of the solution, "unsolvable", "invalid", "timeout" when the
+ * per-puzzle budget ran out or the queue was too full to park it, or "error"
+ * when solving it failed. A line "stats" gets the service counters.
+ * Clients may pipeline up to -inflight lines (4096 by default) before
+ * reading; beyond that the service stops reading from the connection until
+ * the client takes responses, so a client that never reads only stalls
+ * itself.
+ *
+ * Connection threads parse requests into one queue. The batcher only cuts a
+ * batch when a worker is free and then takes everything queued, so batches
+ * stay at one request under light load and grow on their own under heavy
+ * load. A worker solves its batch with MAC and hands the responses to the
+ * writer thread of their connection, which writes them through the
+ * connection's ResultWriter.
+ *
+ * Every request gets a slice of search nodes at a time. One that needs more
+ * is parked as a SearchEngine checkpoint at the back of the queue, so a very
+ * hard puzzle takes turns with the cheap ones behind it instead of holding a
+ * worker, and the timeout counts its solving time over all slices.
+ *
+ * Before reporting ready the service solves the bundled boardfiles on every
+ * worker for the warm-up period, through the same code path as requests.
+ *
+ * Usage: java SolverService [-port n | -socket path] [-workers n] [-batch n]
+ *        [-timeout ms] [-slice nodes] [-inflight n] [-warmup ms] [-report s]
+ */
+public class SolverService {
+
+	static final int DEFAULT_PORT = 9999;
+	static final int CELLS = SudokuTopology.STANDARD.cells;
+	static final int QUEUE = 1 << 16;
+
+	private static final byte INVALID[] = "invalid\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte UNSOLVABLE[] = "unsolvable\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte TIMEOUT[] = "timeout\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte ERROR[] = "error\n".getBytes(StandardCharsets.US_ASCII);
+
+	private final int workers;
+	private final int maxBatch;
+	private final int maxInFlight;
+	private final long timeoutNanos;
+	private final long slice;
+
+	private final ExecutorService pool;
+	private final Semaphore idle;
+	private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE);
+
+	private final ThreadLocal<Worker> worker;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram interval = new LatencyHistogram();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong parked = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private volatile long readyNanos;
+
+	/* A search engine and its budget for each worker thread */
+	private static final class Worker {
+		final SolveBudget budget;
+		final SearchEngine engine;
+
+		Worker(long timeoutMillis) {
+			budget = new SolveBudget(timeoutMillis, 0, null);
+			engine = new SearchEngine(SudokuTopology.STANDARD, budget, new SearchStats());
+		}
+	}
+
+	static final class Request {
+		final Connection connection;
+		final long seq;
+		final long arrival;
+		final int values[]; // null when the line was not a puzzle
+		byte response[];
+		byte checkpoint[];  // where the search stopped while parked
+		long spent;         // solving time over all slices so far
+
+		Request(Connection connection, long seq, long arrival, int values[]) {
+			this.connection = connection;
+			this.seq = seq;
+			this.arrival = arrival;
+			this.values = values;
+		}
+	}
+
+	/*
+	 * slice: search nodes a request gets before it goes back in the queue, 0 for no limit.
+	 * maxInFlight: requests a connection may have unanswered before it is no longer read.
+	 */
+	public SolverService(int workers, int maxBatch, long timeoutMillis, long slice, int maxInFlight) {
+		this.workers = workers;
+		this.maxBatch = maxBatch;
+		this.maxInFlight = maxInFlight;
+		this.timeoutNanos = timeoutMillis * 1000000;
+		this.slice = slice > 0 ? slice : Long.MAX_VALUE;
+		this.idle = new Semaphore(workers);
+		this.worker = ThreadLocal.withInitial(() -> new Worker(timeoutMillis));
+		this.pool = Executors.newFixedThreadPool(workers, r -> {
+			Thread t = new Thread(r, "solver");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/*
+	 * Searches one puzzle for up to nodes nodes on the calling worker thread,
+	 * from its checkpoint if it was parked before. Returns the response, or
+	 * null with a new checkpoint in the request when the slice ran out first.
+	 */
+	private byte[] solve(Request r, long nodes) {
+		Worker w = worker.get();
+		SearchEngine engine = w.engine;
+		if (r.checkpoint != null)
+			engine.restore(r.checkpoint);
+		else if (r.values == null || !engine.start(r.values))
+			return INVALID;
+
+		long start = System.nanoTime();
+		w.budget.start();
+		SearchEngine.Status status = engine.resume(nodes);
+		r.spent += System.nanoTime() - start;
+
+		if (status == SearchEngine.Status.SOLVED) {
+			byte line[] = new byte[CELLS + 1];
+			engine.appendTo(line, 0);
+			line[CELLS] = '\n';
+			return line;
+		}
+		if (status == SearchEngine.Status.UNSATISFIABLE)
+			return UNSOLVABLE;
+		if (w.budget.stopped() || timeoutNanos > 0 && r.spent >= timeoutNanos) {
+			timeouts.incrementAndGet();
+			return TIMEOUT;
+		}
+		r.checkpoint = engine.checkpoint();
+		return null;
+	}
+
+	private void solveBatch(List<Request> batch) {
+		long fresh = 0;
+		for (Request r : batch) {
+			if (r.checkpoint == null)
+				fresh++;
+		}
+		requests.addAndGet(fresh);
+		batches.incrementAndGet();
+
+		Set<Connection> touched = new LinkedHashSet<>();
+		List<Request> unfinished = new ArrayList<>();
+		for (Request r : batch) {
+			// every request must be delivered, or its connection waits on it forever
+			try {
+				r.response = solve(r, slice);
+			} catch (RuntimeException e) {
+				errors.incrementAndGet();
+				r.response = ERROR;
+			}
+			if (r.response == null) {
+				unfinished.add(r);
+				continue;
+			}
+			r.connection.deliver(r);
+			touched.add(r.connection);
+		}
+		for (Request r : unfinished) {
+			if (queue.offer(r)) {
+				parked.incrementAndGet();
+				continue;
+			}
+			// queue full: shed it rather than block a worker on put() or finish it here
+			timeouts.incrementAndGet();
+			r.response = TIMEOUT;
+			r.connection.deliver(r);
+			touched.add(r.connection);
+		}
+		for (Connection c : touched)
+			c.wake();
+	}
+
+	/* Cuts a batch whenever a worker is idle, forever */
+	private void batch() {
+		try {
+			while (true) {
+				idle.acquire();
+				List<Request> batch = new ArrayList<>();
+				batch.add(queue.take());
+				queue.drainTo(batch, maxBatch - 1);
+				pool.execute(() -> {
+					try {
+						solveBatch(batch);
+					} finally {
+						idle.release();
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			// shutting down
+		}
+	}
+
+	/*
+	 * Solves every 9x9 boardfile on every worker until the warm-up time is up,
+	 * through solve() so the request path is what gets compiled.
+	 */
+	public long warmUp(long millis) throws InterruptedException {
+		List<int[]> puzzles = new ArrayList<>();
+		for (SudokuAlgorithms.levels level : SudokuAlgorithms.levels.values()) {
+			for (int number = 1; number <= 5; number++) {
+				if (Files.exists(Paths.get("boardfiles", level.toString() + number)))
+					puzzles.add(new Sudoku(level.toString(), number).values());
+			}
+		}
+		if (puzzles.isEmpty())
+			return 0;
+
+		long deadline = System.nanoTime() + millis * 1000000;
+		AtomicLong solves = new AtomicLong();
+		List<Future<?>> running = new ArrayList<>();
+		for (int i = 0; i < workers; i++) {
+			running.add(pool.submit(() -> {
+				long n = 0;
+				while (System.nanoTime() < deadline) {
+					for (int puzzle[] : puzzles) {
+						Request r = new Request(null, 0, 0, puzzle);
+						while (solve(r, slice) == null) {
+							// parks and resumes like a request would
+						}
+						n++;
+					}
+				}
+				solves.addAndGet(n);
+			}));
+		}
+		for (Future<?> f : running) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return solves.get();
+	}
+
+	/* Binds, then accepts connections on the calling thread until it is interrupted */
+	public void serve(SocketAddress address) throws IOException {
+		ServerSocketChannel server = address instanceof UnixDomainSocketAddress
+				? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+				: ServerSocketChannel.open();
+		if (address instanceof UnixDomainSocketAddress)
+			Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+		server.bind(address);
+
+		Thread batcher = new Thread(this::batch, "batcher");
+		batcher.setDaemon(true);
+		batcher.start();
+
+		readyNanos = System.nanoTime();
+		System.out.println("ready on " + server.getLocalAddress());
+
+		try (server) {
+			while (!Thread.currentThread().isInterrupted()) {
+				new Connection(server.accept()).start();
+			}
+		} finally {
+			batcher.interrupt();
+		}
+	}
+
+	/*
+	 * Requests in, responses out in the same order. Reading and writing each
+	 * run on a thread of their own, so a worker only hands a response over and
+	 * never waits on a socket. With maxInFlight requests unanswered the reader
+	 * stops reading until the writer has caught up.
+	 */
+	final class Connection {
+		private final SocketChannel channel;
+		private final ResultWriter out;
+		private final Map<Long, Request> done = new HashMap<>();
+		private long next;     // sequence number of the next request read
+		private long written;  // sequence number of the next response to write
+		private boolean eof;   // the client sent everything it will send
+		private boolean closed;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.out = new ResultWriter(channel, true, ResultWriter.DEFAULT_CAPACITY, 0);
+		}
+
+		void start() {
+			Thread reader = new Thread(this::read, "connection");
+			reader.setDaemon(true);
+			reader.start();
+			Thread writer = new Thread(this::write, "connection writer");
+			writer.setDaemon(true);
+			writer.start();
+		}
+
+		private void read() {
+			ByteBuffer in = ByteBuffer.allocate(1 << 16);
+			byte line[] = new byte[CELLS + 2];
+			int length = 0;
+			try {
+				while (channel.read(in) >= 0) {
+					in.flip();
+					while (in.hasRemaining()) {
+						byte ch = in.get();
+						if (ch == '\n') {
+							accept(line, length);
+							length = 0;
+						} else if (ch != '\r') {
+							if (length < line.length)
+								line[length] = ch;
+							length++;
+						}
+					}
+					in.clear();
+				}
+				if (length > 0)
+					accept(line, length);
+			} catch (IOException | InterruptedException e) {
+				// client gone, or shutting down
+			} finally {
+				synchronized (this) {
+					eof = true;
+					notifyAll();
+				}
+			}
+		}
+
+		private void accept(byte line[], int length) throws InterruptedException, IOException {
+			if (length == 0)
+				return;
+			synchronized (this) {
+				while (next - written >= maxInFlight && !closed)
+					wait();
+				if (closed)
+					throw new IOException("connection closed");
+			}
+			long arrival = System.nanoTime();
+			if (length == 5 && new String(line, 0, 5, StandardCharsets.US_ASCII).equals("stats")) {
+				Request r = new Request(this, next++, arrival, null);
+				r.response = (stats() + "\n").getBytes(StandardCharsets.US_ASCII);
+				deliver(r);
+				wake();
+				return;
+			}
+			queue.put(new Request(this, next++, arrival, parse(line, length)));
+		}
+
+		/* Hands a finished request to the writer, which picks it up on the next wake(); never blocks */
+		synchronized void deliver(Request r) {
+			if (!closed)
+				done.put(r.seq, r);
+		}
+
+		/* Lets the writer at what was delivered, once per batch so it can write them in one go */
+		synchronized void wake() {
+			if (done.containsKey(written))
+				notifyAll();
+		}
+
+		/* Writes responses in order, flushing whenever the next one is not ready yet, and closes at the end */
+		private void write() {
+			try {
+				Request head;
+				while ((head = take()) != null) {
+					out.write(head.response, 0, head.response.length);
+					long nanos = System.nanoTime() - head.arrival;
+					latency.record(nanos);
+					interval.record(nanos);
+					if (!ready())
+						out.flush();
+				}
+				out.flush();
+			} catch (IOException | InterruptedException e) {
+				// client gone, or shutting down
+			} finally {
+				close();
+			}
+		}
+
+		/* The next response in order, waiting for it; null once the client is done and everything is written */
+		private synchronized Request take() throws InterruptedException {
+			Request head;
+			while ((head = done.remove(written)) == null) {
+				if (eof && written == next)
+					return null;
+				wait();
+			}
+			written++;
+			notifyAll(); // the reader may be waiting for room
+			return head;
+		}
+
+		private synchronized boolean ready() {
+			return done.containsKey(written);
+		}
+
+		private synchronized void close() {
+			closed = true;
+			done.clear();
+			notifyAll();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing left to do
+			}
+		}
+	}
+
+	private static int[] parse(byte line[], int length) {
+		if (length != CELLS)
+			return null;
+		int values[] = new int[CELLS];
+		for (int i = 0; i < CELLS; i++) {
+			byte ch = line[i];
+			if (ch == '.')
+				ch = '0';
+			if (ch < '0' || ch > '9')
+				return null;
+			values[i] = ch - '0';
+		}
+		return values;
+	}
+
+	public String stats() {
+		long n = requests.get(), b = batches.get();
+		double seconds = readyNanos == 0 ? 0 : (System.nanoTime() - readyNanos) / 1e9;
+		return String.format(
+				"%d requests, %d batches (%.1f per batch), %d timeouts, %d parked, %d errors, %.0f requests/s, %s",
+				n, b, b == 0 ? 0 : (double) n / b, timeouts.get(), parked.get(), errors.get(),
+				seconds == 0 ? 0 : n / seconds, latency);
+	}
+
+	/* Throughput and latency since the previous call */
+	private String intervalStats(long nanos) {
+		long n = interval.count();
+		String line = String.format("%.0f requests/s, %s", n * 1e9 / nanos, interval);
+		interval.reset();
+		return line;
+	}
+
+	/* -port n or -socket path in args, the default port when neither is there */
+	static SocketAddress address(String ar[]) {
+		for (int i = 0; i + 1 < ar.length; i++) {
+			if (ar[i].equals("-socket"))
+				return UnixDomainSocketAddress.of(ar[i + 1]);
+			if (ar[i].equals("-port"))
+				return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(ar[i + 1]));
+		}
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+	}
+
+	static long option(String ar[], String name, long otherwise) {
+		for (int i = 0; i + 1 < ar.length; i++) {
+			if (ar[i].equals(name))
+				return Long.parseLong(ar[i + 1]);
+		}
+		return otherwise;
+	}
+
+	public static void main(String ar[]) throws Exception {
+
+		int workers = (int) option(ar, "-workers", Runtime.getRuntime().availableProcessors());
+		SolverService service = new SolverService(workers, (int) option(ar, "-batch", 256),
+				option(ar, "-timeout", 1000), option(ar, "-slice", 1000), (int) option(ar, "-inflight", 4096));
+
+		long start = System.nanoTime();
+		long solves = service.warmUp(option(ar, "-warmup", 2000));
+		System.err.println("warm-up: " + solves + " solves in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		long report = option(ar, "-report", 10);
+		if (report > 0) {
+			Thread reporter = new Thread(() -> {
+				long last = System.nanoTime();
+				try {
+					while (true) {
+						Thread.sleep(report * 1000);
+						long now = System.nanoTime();
+						if (service.interval.count() > 0)
+							System.err.println(service.intervalStats(now - last));
+						last = now;
+					}
+				} catch (InterruptedException e) {
+					// shutting down
+				}
+			}, "reporter");
+			reporter.setDaemon(true);
+			reporter.start();
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(service.stats())));
+
+		service.serve(address(ar));
+	}
+}
@@ -1,7 +1,6 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -17,31 +16,31 @@ class Cell {
 	Cell constraints[];
 	final boolean hardwired;
 	final CellPosition position;
-	Set<Cell> removedFromDomainSet; // keeps track of all constraint cells, from which domain value was removed
 
+	/* Copies value and domain; the constraints are left for the new board to wire up */
 	public Cell(Cell copy) {
 		this.val = copy.val;
-		this.domain = new HashSet<Integer>();
-		this.domain.addAll(copy.domain);
-		this.constraints = copy.constraints;  //Durr
+		this.domain = new HashSet<Integer>(copy.domain);
+		this.constraints = copy.constraints == null ? null : new Cell[copy.constraints.length];
 		this.hardwired = copy.hardwired;
 		this.position = new CellPosition(copy.position.row, copy.position.col);
-		this.removedFromDomainSet = new HashSet<>();
-		//this.removedFromDomainSet.addAll(copy.removedFromDomainSet);
 	}
 
 
 	public Cell(int val, int row, int col) {
+		this(val, row, col, SudokuTopology.STANDARD);
+	}
+
+	public Cell(int val, int row, int col, SudokuTopology topology) {
 		this.val = val;
 		domain = new HashSet<Integer>(); // true - value is present in domain, else removed
 		position = new CellPosition(row, col);
 
 		if (val == 0) {
 			this.hardwired = false;
-			for (int i = 1; i <= 9; i++)
+			for (int i = 1; i <= topology.size; i++)
 				domain.add(i);
-			constraints = new Cell[20];
-			removedFromDomainSet = new HashSet<>();
+			constraints = new Cell[topology.peerCount];
 		} else {
 			this.hardwired = true;
 			domain.add(val);
@@ -95,98 +94,169 @@ class CellPosition {
 
 public class Sudoku {
 
+	final SudokuTopology topology;
+	final int size; // values per unit, 9 for the classic board
+
 	Cell board[][];
-	ArrayList<Cell> unassigned;
+	UnassignedSet unassigned; // blank cells as row * size + col
+	private MRVQueue mrv; // built on the first findMRVCell call
 
+	/*
+	 * Independent copy: its own cells, constraints pointing into the copy and
+	 * its own unassigned set in the same order. For a cheap copy, or one to
+	 * hand to another thread, take a snapshot() instead.
+	 */
 	public Sudoku(Sudoku s) {
-		this.board = new Cell[9][9];
+		this.topology = s.topology;
+		this.size = s.size;
+		this.board = new Cell[size][size];
 
-		for(int x = 0; x < 9; x++) {
-			for(int y = 0; y < 9; y++) {
+		for(int x = 0; x < size; x++) {
+			for(int y = 0; y < size; y++) {
 				this.board[x][y] = new Cell(s.board[x][y]);
 			}
 		}
-		this.unassigned = s.unassigned;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (board[x][y].constraints != null)
+					addConstraints(board[x][y]);
+			}
+		}
+		this.unassigned = new UnassignedSet(s.unassigned);
 	}
 
 	/* initialize sudoku Board */
 	public Sudoku(String level, int number) {
-		// Populate the board
 		// Read from the file
-		this.board = new Cell[9][9];
-		unassigned = new ArrayList<>();
+		this(readBoardFile("boardfiles/" + level + number));
+	}
 
-		try (BufferedReader br = new BufferedReader(new FileReader("boardfiles/" + level + number))) {
-			// Populate the board
-			for (int i = 0; i < 9; i++) {
-				String currLine = br.readLine();
-				for (int j = 0; j < 9; j++) {
-					int val = Integer.parseInt(currLine.charAt(j) + "");
-					board[i][j] = new Cell(val, i, j);
-					if (val == 0) {
-						unassigned.add(board[i][j]);
-					}
-				}
+	/*
+	 * Builds an independent board from values in row-major order, 0 = blank.
+	 * The length picks the size: 81 values for 9x9, 256 for 16x16, 625 for 25x25.
+	 */
+	public Sudoku(int values[]) {
+		this.topology = SudokuTopology.ofCells(values.length);
+		this.size = topology.size;
+
+		// Populate the board
+		this.board = new Cell[size][size];
+		unassigned = new UnassignedSet(topology.cells);
+
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				board[i][j] = new Cell(values[i * size + j], i, j, topology);
 			}
+		}
+		collectUnassigned();
 
-			// Now add the constraints for blank values
+		// Now add the constraints for blank values
 
-			for (int i = 0; i < 9; i++) {
-				for (int j = 0; j < 9; j++) {
-					if(this.board[i][j].hardwired) continue;
-					addConstraints(this.board[i][j]);
-				}
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if(this.board[i][j].hardwired) continue;
+				addConstraints(this.board[i][j]);
 			}
+		}
+
+		//Remove the hardwired domains values in cells which are blank
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if(this.board[i][j].hardwired) continue;
+				removeDomains(this.board[i][j]);
+			}
+		}
+	}
 
-			//Remove the hardwired domains values in cells which are blank
+	/*
+	 * A board file has one line per row. A 9x9 row is 9 digits, larger boards
+	 * write every row as whitespace separated numbers (16 of them for 16x16, 25
+	 * for 25x25) and the number count on the first line gives the size.
+	 */
+	private static int[] readBoardFile(String path) {
+		int values[] = new int[81];
+
+		try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+			String currLine = br.readLine();
+			String tokens[] = currLine.trim().split("\\s+");
+			if (tokens.length > 1) {
+				int size = tokens.length;
+				values = new int[size * size];
+				for (int i = 0; i < size; i++) {
+					for (int j = 0; j < size; j++) {
+						values[i * size + j] = Integer.parseInt(tokens[j]);
+					}
+					if (i + 1 < size)
+						tokens = br.readLine().trim().split("\\s+");
+				}
+				return values;
+			}
 			for (int i = 0; i < 9; i++) {
+				if (i > 0)
+					currLine = br.readLine();
 				for (int j = 0; j < 9; j++) {
-					if(this.board[i][j].hardwired) continue;
-					removeDomains(this.board[i][j]);
+					char ch = currLine.charAt(j);
+					values[i * 9 + j] = ch == '.' ? 0 : ch - '0';
 				}
 			}
-
-
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		return values;
 	}
 
-	private void addConstraints(Cell cell) {
-		int startRow = cell.position.row / 3;
-		int startCol = cell.position.col / 3;
-
-		Set<CellPosition> pos = new HashSet<CellPosition>();
-		// SQUARE
-		for (int r = startRow * 3; r < startRow * 3 + 3; r++) {
-
-			for (int c = startCol * 3; c < startCol * 3 + 3; c++) {
-				if (r == cell.position.row && c == cell.position.col)
-					continue;
-				pos.add(new CellPosition(r, c));
-//				cell.constraints[index++] = this.board[r][c];
+	/* Values and domains as they are now, two primitive arrays */
+	public BoardState snapshot() {
+		return BoardState.of(this);
+	}
 
+	/*
+	 * Puts values and domains back to a snapshot of this board (or of a copy of
+	 * it). Blank cells are unassigned again in row-major order.
+	 */
+	public void restore(BoardState state) {
+		if (state.topology != topology)
+			throw new IllegalArgumentException("snapshot of another board size");
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				Cell cell = board[row][col];
+				int index = row * size + col;
+				cell.val = state.value(index);
+				cell.domain.clear();
+				for (long bits = state.domain(index); bits != 0; bits &= bits - 1)
+					cell.domain.add(Long.numberOfTrailingZeros(bits) + 1);
 			}
 		}
+		collectUnassigned();
+		mrv = null;
+	}
 
-		// ROW
-		for (int i = 0; i < 9; i++) {
-			if (i == cell.position.col)
-				continue;
-			pos.add(new CellPosition(cell.position.row, i));
-//			cell.constraints[index++] = this.board[cell.position.row][i];
+	/* Unassigned becomes the blank cells, popped in row-major order */
+	void collectUnassigned() {
+		unassigned.clear();
+		for (int index = topology.cells - 1; index >= 0; index--) {
+			if (board[index / size][index % size].val == 0)
+				unassigned.add(index);
 		}
+	}
 
-		// Col
-		for (int i = 0; i < 9; i++) {
-			if (i == cell.position.row)
-				continue;
-			pos.add(new CellPosition(i, cell.position.col));
-//			cell.constraints[index++] = this.board[i][cell.position.col];
+	/* Current values in row-major order, 0 = blank */
+	public int[] values() {
+		int values[] = new int[topology.cells];
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				values[row * size + col] = board[row][col].val;
+			}
 		}
-		int index = 0;
-		for(CellPosition position: pos) {
-			cell.constraints[index++] = this.board[position.row][position.col];
+		return values;
+	}
+
+	/* Wires the shared peer table onto the cell, nothing is computed per board */
+	private void addConstraints(Cell cell) {
+		int peers[] = topology.peers[cell.position.row * size + cell.position.col];
+
+		for (int i = 0; i < peers.length; i++) {
+			cell.constraints[i] = this.board[peers[i] / size][peers[i] % size];
 		}
 	}
 
@@ -205,13 +275,13 @@ public class Sudoku {
 	 */
 	public boolean allRowConstraintsViolated() {
 
-		for (int row = 0; row < 9; row++) {
+		for (int row = 0; row < size; row++) {
 
-			// Using arr of 10 size to avoid unwanted complexity
+			// Using arr of size + 1 to avoid unwanted complexity
 			// With this we can directly map if some value is presentAlready or not
-			boolean presentAlready[] = new boolean[10];
+			boolean presentAlready[] = new boolean[size + 1];
 
-			for (int col = 0; col < 9; col++) {
+			for (int col = 0; col < size; col++) {
 				int val = board[row][col].val;
 				if (val == 0) {
 					continue;
@@ -231,12 +301,12 @@ public class Sudoku {
 	 */
 	public boolean allColsConstraintsViolated() {
 
-		for (int col = 0; col < 9; col++) {
-			// Using arr of 10 size to avoid unwanted complexity
+		for (int col = 0; col < size; col++) {
+			// Using arr of size + 1 to avoid unwanted complexity
 			// With this we can directly map if some value is presentAlready or not
-			boolean presentAlready[] = new boolean[10];
+			boolean presentAlready[] = new boolean[size + 1];
 
-			for (int row = 0; row < 9; row++) {
+			for (int row = 0; row < size; row++) {
 				int val = board[row][col].val;
 				if (val == 0) {
 					continue;
@@ -257,16 +327,17 @@ public class Sudoku {
 
 	public boolean allSquareConstraintsViolated() {
 
+		int order = topology.order;
 		int colCount = 0;
-		while (colCount < 3) { // Iterate through 3 cols at a time
+		while (colCount < order) { // Iterate through order cols at a time
 			int rowCount = 0;
-			while (rowCount < 3) { // For those 3 cols, iterate 3 rows
+			while (rowCount < order) { // For those cols, iterate order rows
 
-				boolean presentAlready[] = new boolean[10];
+				boolean presentAlready[] = new boolean[size + 1];
 
-				for (int row = rowCount * 3; row < rowCount * 3 + 3; row++) {
+				for (int row = rowCount * order; row < rowCount * order + order; row++) {
 
-					for (int col = colCount * 3; col < colCount * 3 + 3; col++) {
+					for (int col = colCount * order; col < colCount * order + order; col++) {
 						// check if number was already present?
 						int val = board[row][col].val;
 						if (val == 0) {
@@ -308,24 +379,35 @@ public class Sudoku {
 
 	/*
 	 * Checks if all Values are filled in Sudoku Does not Check if all Constraints
-	 * are satisfied or not returns true -> if all values are filled false otherwise
+	 * are satisfied or not returns true -> if all values are filled false otherwise.
+	 * Solvers keep unassigned up to date, so this is a size check.
 	 */
 
 	public boolean complete() {
-		for (int row = 0; row < 9; row++) {
-			for (int col = 0; col < 9; col++) {
-				if (board[row][col].val == 0)
-					return false;
+		return unassigned.isEmpty();
+	}
+
+	/* Takes over a solution found on a primitive board: values in row-major order, nothing left unassigned */
+	public void fillSolution(int values[]) {
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				board[row][col].val = values[row * size + col];
 			}
 		}
-		return true;
+		unassigned.clear();
+	}
+
+	/* Complete and no row, column or square constraint violated */
+	public boolean isSolved() {
+		return complete() && !allRowConstraintsViolated() && !allColsConstraintsViolated()
+				&& !allSquareConstraintsViolated();
 	}
 
 	/**/
 	public int[] findEmptyCell() {
 
-		for (int row = 0; row < 9; row++) {
-			for (int col = 0; col < 9; col++) {
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
 				if (board[row][col].val == 0) {
 					int cell[] = { row, col };
 					return cell;
@@ -392,13 +474,14 @@ public class Sudoku {
 	public int calculateValuesLeftInDomain(Cell cell) {
 
 		// Square
-		int startRow = cell.position.row / 3;
-		int startCol = cell.position.col / 3;
+		int order = topology.order;
+		int startRow = cell.position.row / order;
+		int startCol = cell.position.col / order;
 
 		Set<Integer> set = new HashSet<>();
-		for (int r = startRow * 3; r < startRow * 3 + 3; r++) {
+		for (int r = startRow * order; r < startRow * order + order; r++) {
 
-			for (int c = startCol * 3; c < startCol * 3 + 3; c++) {
+			for (int c = startCol * order; c < startCol * order + order; c++) {
 				int val = board[r][c].val;
 				if (val == 0) {
 					continue;
@@ -408,7 +491,7 @@ public class Sudoku {
 		}
 
 		// ROW
-		for (int i = 0; i < 9; i++) {
+		for (int i = 0; i < size; i++) {
 			int val = board[cell.position.row][i].val;
 			if (val == 0) {
 				continue;
@@ -417,7 +500,7 @@ public class Sudoku {
 		}
 
 		// Col
-		for (int i = 0; i < 9; i++) {
+		for (int i = 0; i < size; i++) {
 			int val = board[i][cell.position.col].val;
 			if (val == 0) {
 				continue;
@@ -435,65 +518,92 @@ public class Sudoku {
 		return cell.domain.size() - count;
 	}
 
-	/* minimum remaining value */
+	/*
+	 * minimum remaining value, ties go to the cell with the most unassigned neighbours.
+	 * Counts are kept incrementally by the MRVQueue, callers report every committed
+	 * assignment with mrvAssigned/mrvUnassigned and hand the cell back with mrvPushBack.
+	 * Returns null once every cell is assigned.
+	 */
 	public Cell findMRVCell() {
+		if (mrv == null)
+			mrv = new MRVQueue(this);
 
-		int minimumRemainingValues = Integer.MAX_VALUE;
-
-		Cell c = null;
+		int index = mrv.poll();
+		return index < 0 ? null : board[index / size][index % size];
+	}
 
-		for(Cell cellToCheck : this.unassigned) {
-			if (cellToCheck.val != 0) {System.out.println("WTH "+cellToCheck); continue;}
+	public void mrvAssigned(Cell cell) {
+		mrv.assigned(cell.position.row * size + cell.position.col, cell.val);
+	}
 
-			int values = calculateValuesLeftInDomain(cellToCheck);
+	public void mrvUnassigned(Cell cell) {
+		mrv.unassigned(cell.position.row * size + cell.position.col, cell.val);
+	}
 
-			if (values < minimumRemainingValues) {
-				minimumRemainingValues = values;
-				c = cellToCheck;
-			}
-		}
+	public void mrvPushBack(Cell cell) {
+		mrv.push(cell.position.row * size + cell.position.col);
+	}
 
-		return removeFromUnassigned(c) ? c:null;
+	/* Value padded to the widest value of the board, so larger boards stay aligned */
+	private void pad(StringBuilder sb, int val) {
+		int width = Integer.toString(size).length();
+		for (int i = Integer.toString(val).length(); i < width; i++)
+			sb.append(' ');
+		sb.append(val);
 	}
 
 	public String printBoard() {
-		String str="";
-		for (int row = 0; row < 9; row++) {
-			for (int col = 0; col < 9; col++) {
-				str=str+board[row][col].val+" ";
+		StringBuilder sb = new StringBuilder(size * (size * (Integer.toString(size).length() + 1) + 1));
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				pad(sb, board[row][col].val);
+				sb.append(' ');
 			}
-			str=str+"\n";
+			sb.append('\n');
 		}
-		return str;
+		return sb.toString();
 	}
 
 	@Override
 	public String toString() {
-		String str = "";
+		StringBuilder sb = new StringBuilder();
+		int order = topology.order;
+
+		// ------+-------+-------- on a 9x9 board
+		StringBuilder separator = new StringBuilder();
+		int boxWidth = order * (Integer.toString(size).length() + 1);
+		for (int box = 0; box < order; box++) {
+			int dashes = boxWidth + (box > 0 ? 1 : 0) + (box == order - 1 ? 1 : 0);
+			for (int i = 0; i < dashes; i++)
+				separator.append('-');
+			separator.append(box == order - 1 ? '\n' : '+');
+		}
 
-		for (int row = 0; row < 9; row++) {
-			for (int col = 0; col < 9; col++) {
-				str = str + board[row][col].val + " ";
-				if ((col+1) % 3 == 0) str = str + "| ";
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				pad(sb, board[row][col].val);
+				sb.append(' ');
+				if ((col+1) % order == 0) sb.append("| ");
 			}
-			str = str + "\n";
-			if ((row+1) % 3 == 0) str = str + "------+-------+--------\n";
+			sb.append('\n');
+			if ((row+1) % order == 0) sb.append(separator);
 		}
 
-		// TODO Auto-generated method stub
-		return str;
+		return sb.toString();
 	}
 
 	public Cell popFromUnassigned() {
-		return unassigned.remove(0);
+		int index = unassigned.pop();
+		return board[index / size][index % size];
 	}
 
 	public boolean removeFromUnassigned(Cell c) {
-		return unassigned.remove(c);
+		return unassigned.remove(c.position.row * size + c.position.col);
 	}
 
+	/* Undoes popFromUnassigned or removeFromUnassigned, last one first */
 	public void pushBackToUnassigned(Cell cell) {
-		unassigned.add(0, cell);
+		unassigned.restore(cell.position.row * size + cell.position.col);
 	}
 
 }
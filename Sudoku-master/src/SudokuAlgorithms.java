@@ -1,145 +1,174 @@
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
-import java.util.Stack;
+import java.util.ArrayDeque;
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
-import static java.lang.Math.exp;
-import static java.lang.Math.random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 
 public class SudokuAlgorithms {
 
-	// Testing webhook
-	/* Implement the backtracking algorithm */
-	public boolean backtracking(Sudoku s) {
+	private final BitSolver bitSolver;
 
-		if (s.complete()) {
-			return true;
-		}
+	private DancingLinks dlx; // its node arena is reused across calls on boards of one size
 
-		// pick next empty spot
-		Cell cell = s.popFromUnassigned();
-		int row = cell.position.row;
-		int col = cell.position.col;
+	private HumanTechniques techniques;
 
-		// Duplicating it, to avoid modification horrors
-		Set<Integer> domainList = new HashSet<>();
+	private SearchEngine engine;
 
-		domainList.addAll(s.board[row][col].domain);
+	// When set, every solver checks it once per node and returns false once cancelled
+	private final CancellationToken token;
 
-		for (Integer val : domainList) {
-			s.board[row][col].val = val;
-			if (s.constraintsPresent(row, col)) { // Cut DOWN option, which violates constraints
-				continue;
-			}
+	// Counters of every solver of this instance, see measure()
+	private final SearchStats stats = new SearchStats();
 
-			if (backtracking(s)) {
-				return true;
-			} else {
-				continue;
-			}
-		}
-		s.board[row][col].val = 0;
-		s.pushBackToUnassigned(cell);
-		return false;
+	public SudokuAlgorithms() {
+		this(null);
 	}
 
-	private boolean eliminateDomainValuesFromConstraints(Cell cell) {
-
-		for (Cell constraintCell : cell.constraints) {
-			if (constraintCell.val != 0) // We should only check variables that are not assigned values and are
-											// neighbors
-				continue;
+	public SudokuAlgorithms(CancellationToken token) {
+		this.token = token;
+		this.bitSolver = new BitSolver(token, stats);
+	}
 
-			boolean removed = constraintCell.removeFromDomain(cell.val);
+	private boolean cancelled() {
+		return token != null && token.isCancelled();
+	}
 
-			if (removed == true)
-				cell.removedFromDomainSet.add(constraintCell);
+	/* Counters since construction or the last stats().reset() */
+	public SearchStats stats() {
+		return stats;
+	}
 
-			if (constraintCell.domain.size() == 0) {
-				// System.out.println("WIPEOUT: Removing value"+cell.val+" cell- "+cell+" -
-				// contrainst"+constraintCell);
-				return false;
-			}
+	/*
+	 * Runs one solver with fresh counters and returns them. The snapshot is also
+	 * added to SearchStats.totals() and committed as a SolveEvent when JFR records.
+	 */
+	public SearchStats.Snapshot measure(String algorithm, Predicate<Sudoku> solver, Sudoku s) {
+		SolveEvent event = new SolveEvent();
+		event.begin();
+		stats.reset();
+
+		long start = System.nanoTime();
+		boolean solved = solver.test(s);
+		SearchStats.Snapshot snapshot = stats.snapshot(algorithm, solved, System.nanoTime() - start);
+		SearchStats.record(snapshot);
+
+		if (event.shouldCommit()) {
+			event.algorithm = algorithm;
+			event.solved = solved;
+			event.nodes = snapshot.nodes;
+			event.backtracks = snapshot.backtracks;
+			event.wipeouts = snapshot.wipeouts;
+			event.revisions = snapshot.revisions;
+			event.valuesTried = snapshot.valuesTried;
+			event.maxDepth = snapshot.maxDepth;
+			event.commit();
 		}
-
-		return true;
+		return snapshot;
 	}
 
-	private void addDomainValuesToConstraint(Cell cell) {
-
-		for (Cell constraintCell : cell.constraints) {
-
-			if (cell.removedFromDomainSet.remove(constraintCell) == false)
-				continue;
-
-			if (constraintCell.val != 0)
-				continue;
-			constraintCell.domain.add(cell.val);
-		}
+	/*
+	 * measure() with a verdict. When this instance runs under a SolveBudget it is
+	 * restarted first, so its deadline and node limit apply to this solve alone.
+	 */
+	public SolveResult solve(String algorithm, Predicate<Sudoku> solver, Sudoku s) {
+		if (token instanceof SolveBudget)
+			((SolveBudget) token).start();
+
+		SearchStats.Snapshot snapshot = measure(algorithm, solver, s);
+		SolveResult.Status status = snapshot.solved == 1 ? SolveResult.Status.SOLVED
+				: token != null && token.stopped() ? SolveResult.Status.BUDGET_EXHAUSTED
+						: SolveResult.Status.UNSATISFIABLE;
+		return new SolveResult(status, snapshot);
 	}
 
-	/* Implement the backtracking algorithm with forward checking */
+	/* Bitmask copy of the board that counts its revisions and wipeouts into stats */
+	private BitBoard bitBoard(Sudoku s) {
+		BitBoard b = new BitBoard(s);
+		b.stats = stats;
+		return b;
+	}
 
-	public boolean forwardChecking(Sudoku s) {
+	/* Implement the backtracking algorithm */
+	public boolean backtracking(Sudoku s) {
 
 		if (s.complete()) {
 			return true;
 		}
+		if (cancelled()) {
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED)
+			stats.descend();
 
 		// pick next empty spot
 		Cell cell = s.popFromUnassigned();
-
 		int row = cell.position.row;
 		int col = cell.position.col;
 
+		// Duplicating it, to avoid modification horrors
 		Set<Integer> domainList = new HashSet<>();
 
 		domainList.addAll(s.board[row][col].domain);
 
 		for (Integer val : domainList) {
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
 			s.board[row][col].val = val;
+			if (s.constraintsPresent(row, col)) { // Cut DOWN option, which violates constraints
+				stats.backtracks++;
+				continue;
+			}
 
-			// We don't have to check constraintsPresent for forwardChecking, because, we
-			// make sure in previous step that the neighbor constraint domain is not empty
-			// if (s.constraintsPresent(row, col)) { // Cut DOWN option, which violates
-			// constraints
-			// System.out.println("Hello");
-			// continue;
-			// }
-
-			if (!eliminateDomainValuesFromConstraints(s.board[row][col])) {
-				// oopsie, we got domain-wipeout
-				// rollback
-				// System.out.println(s);
-				addDomainValuesToConstraint(s.board[row][col]);
-				s.board[row][col].val = 0;
+			if (backtracking(s)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
+				return true;
 			} else {
-
-				if (forwardChecking(s)) {
-					return true;
-				} else {
-					addDomainValuesToConstraint(s.board[row][col]);
-					s.board[row][col].val = 0;
-					continue;
-				}
+				stats.backtracks++;
+				continue;
 			}
-
 		}
 		s.board[row][col].val = 0;
 		s.pushBackToUnassigned(cell);
+		if (SearchStats.ENABLED)
+			stats.ascend();
 		return false;
+	}
 
+	/* Implement the backtracking algorithm with forward checking */
+
+	public boolean forwardChecking(Sudoku s) {
+
+		// Search runs on bitmask domains, assigning cells in the same order they sit in unassigned
+		BitBoard b = bitBoard(s);
+		int order[] = new int[s.unassigned.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = s.unassigned.get(i);
+		}
+
+		if (!bitSolver.forwardChecking(b, order, 0)) {
+			return false;
+		}
+		b.copyTo(s);
+		s.unassigned.clear();
+		return true;
 	}
 
 	/*
 	 * AC3 Algorithm - remove arc inconsistency
+	 * queued[row * size + col] mirrors queue membership, so enqueueing never scans the queue
 	 */
-	private Sudoku ac3(Sudoku s, Stack<Cell> stack) {
+	private Sudoku ac3(Sudoku s, ArrayDeque<Cell> queue, boolean queued[]) {
 
-		while (!stack.isEmpty()) {
+		while (!queue.isEmpty() && !cancelled()) {
 
-			Cell cell = stack.pop();
+			Cell cell = queue.poll();
+			queued[cell.position.row * s.size + cell.position.col] = false;
 
 			int cellRow = cell.position.row;
 			int cellCol = cell.position.col;
@@ -160,15 +189,20 @@ public class SudokuAlgorithms {
 
 			}
 
-			// No change in Domain, don't continue any further, pop new node
+			// No change in Domain, don't continue any further, poll new node
 			if (valuesToRemoveFromDomain.isEmpty())
 				continue;
 
-			// remove the value from domain + add it's neighbors in stack
+			// remove the value from domain + add it's neighbors in queue
 
 			for (int val : valuesToRemoveFromDomain) {
 				s.board[cellRow][cellCol].removeFromDomain(val);
 			}
+			if (SearchStats.ENABLED) {
+				stats.revisions += valuesToRemoveFromDomain.size();
+				if (s.board[cellRow][cellCol].domain.isEmpty())
+					stats.wipeouts++;
+			}
 
 			// Only one value if left, so that will only be the solution
 			if (s.board[cellRow][cellCol].domain.size() == 1) {
@@ -180,13 +214,16 @@ public class SudokuAlgorithms {
 				}
 			}
 
-			// Now, it's time to add it's neighbors to stack
+			// Now, it's time to add it's neighbors to queue
 
 			for (Cell constraintCell : cell.constraints) {
 				if (constraintCell.val != 0)
 					continue; // No need to add them, as their domain would not change
-				if (!stack.contains(constraintCell))
-					stack.add(constraintCell);
+				int index = constraintCell.position.row * s.size + constraintCell.position.col;
+				if (!queued[index]) {
+					queued[index] = true;
+					queue.add(constraintCell);
+				}
 			}
 		}
 		return s;
@@ -197,13 +234,18 @@ public class SudokuAlgorithms {
 	 * unassigned initially
 	 */
 	private Sudoku preeProcessAC3(Sudoku s) {
-		Stack<Cell> stack = new Stack<>();
+		ArrayDeque<Cell> queue = new ArrayDeque<>();
+		boolean queued[] = new boolean[s.topology.cells];
 		// Initially, add all cells in Queue
-		for (Cell cell : s.unassigned) {
-			stack.push(cell);
+		for (int i = 0; i < s.unassigned.size(); i++) {
+			int index = s.unassigned.get(i);
+			queue.add(s.board[index / s.size][index % s.size]);
+			queued[index] = true;
 		}
 
-		return ac3(s, stack);
+		ac3(s, queue, queued);
+		s.collectUnassigned(); // cells left with a single value were filled in
+		return s;
 	}
 
 	/*
@@ -214,14 +256,108 @@ public class SudokuAlgorithms {
 		// return forwardChecking(preeProcessAC3(s));
 	}
 
-	/* Implement the heuristics on vertex order and value/vertex order */
-	public boolean heuristicFC(Sudoku s) {
-		if (s.complete()) {
-			return true;
+	/*
+	 * Maintained arc consistency: AC-3 runs to a fixpoint before the search and
+	 * again after every assignment, on bitmask domains whose changes are undone on backtrack
+	 */
+	public boolean maintainingArcConsistency(Sudoku s) {
+		BitBoard b = bitBoard(s);
+
+		if (!b.propagateAll() || !bitSolver.mac(b)) {
+			return false;
 		}
+		b.copyTo(s);
+		s.unassigned.clear();
+		return true;
+	}
 
+	/*
+	 * The same MAC search on the explicit stack of a SearchEngine, which needs no
+	 * Java stack per level and could be paused and checkpointed between nodes
+	 */
+	public boolean iterativeMAC(Sudoku s) {
+		if (engine == null || engine.topology != s.topology)
+			engine = new SearchEngine(s.topology, token, stats);
+
+		if (!engine.start(s.values()) || engine.resume() != SearchEngine.Status.SOLVED) {
+			return false;
+		}
+		int solution[] = new int[s.topology.cells];
+		engine.copyTo(solution);
+		s.fillSolution(solution);
+		return true;
+	}
+
+	/*
+	 * Human techniques (singles, pairs, triples, pointing, box-line, X-Wing) to a
+	 * fixpoint, then MAC search for whatever they leave open
+	 */
+	public boolean humanTechniques(Sudoku s) {
+		return humanTechniques(s, false);
+	}
+
+	/* With atEveryNode the techniques also run after every assignment of the search */
+	public boolean humanTechniques(Sudoku s, boolean atEveryNode) {
+		if (techniques == null || techniques.topology != s.topology)
+			techniques = new HumanTechniques(s.topology);
+
+		BitBoard b = bitBoard(s);
+		if (!b.propagateAll() || !techniques.apply(b)) {
+			return false;
+		}
+		if (!(atEveryNode ? bitSolver.mac(b, techniques) : bitSolver.mac(b))) {
+			return false;
+		}
+		b.copyTo(s);
+		s.unassigned.clear();
+		return true;
+	}
+
+	/* Which techniques fired in humanTechniques so far, null before its first call */
+	public HumanTechniques techniques() {
+		return techniques;
+	}
+
+	/* Exact cover with Dancing Links (Knuth's Algorithm X) */
+	public boolean dancingLinks(Sudoku s) {
+		if (dlx == null || dlx.topology != s.topology)
+			dlx = new DancingLinks(s.topology, token, stats);
+
+		int solution[] = new int[s.topology.cells];
+		if (!dlx.load(s.values()) || !dlx.solve(solution)) {
+			return false;
+		}
+		s.fillSolution(solution);
+		return true;
+	}
+
+	/*
+	 * Number of solutions of the board, counting stops at limit. The board is not modified.
+	 * -1 if the token cancelled the count before it was done.
+	 */
+	public int countSolutions(Sudoku s, int limit) {
+		return bitSolver.countSolutions(new BitBoard(s), limit, null);
+	}
+
+	/* False as well when the token cancelled the check, see countSolutions */
+	public boolean hasUniqueSolution(Sudoku s) {
+		return countSolutions(s, 2) == 1;
+	}
+
+	/* Implement the heuristics on vertex order and value/vertex order */
+	public boolean heuristicFC(Sudoku s) {
 		// pick next empty spot
 		Cell cell = s.findMRVCell();
+		if (cell == null) { // complete
+			return true;
+		}
+		if (cancelled()) {
+			s.mrvPushBack(cell);
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED)
+			stats.descend();
 		int row = cell.position.row;
 		int col = cell.position.col;
 
@@ -229,30 +365,46 @@ public class SudokuAlgorithms {
 
 		for (int i = 0; i < domainList.length; i++) {
 			int val = domainList[i];
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
 			s.board[row][col].val = val;
 
 			if (s.constraintsPresent(row, col)) { // Cut DOWN option, which violates constraints
+				stats.backtracks++;
 				continue;
 			}
 
+			s.mrvAssigned(cell);
+			s.removeFromUnassigned(cell);
 			if (heuristic(s)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
 				return true;
-			} else {
-				continue;
 			}
+			s.pushBackToUnassigned(cell);
+			s.mrvUnassigned(cell);
+			stats.backtracks++;
 		}
 		s.board[row][col].val = 0;
-		s.pushBackToUnassigned(cell);
+		s.mrvPushBack(cell);
+		if (SearchStats.ENABLED)
+			stats.ascend();
 		return false;
 	}
 	
 	public boolean heuristic (Sudoku s) {
-		if (s.complete()) {
-			return true;
-		}
-
 		// pick next empty spot
 		Cell cell = s.findMRVCell();
+		if (cell == null) { // complete
+			return true;
+		}
+		if (cancelled()) {
+			s.mrvPushBack(cell);
+			return false;
+		}
+		stats.nodes++;
+		if (SearchStats.ENABLED)
+			stats.descend();
 		int row = cell.position.row;
 		int col = cell.position.col;
 
@@ -260,225 +412,111 @@ public class SudokuAlgorithms {
 
 		for (int i = 0; i < domainList.length; i++) {
 			int val = domainList[i];
+			if (SearchStats.ENABLED)
+				stats.valuesTried++;
 			s.board[row][col].val = val;
 
 			if (s.constraintsPresent(row, col)) { // Cut DOWN option, which violates constraints
+				stats.backtracks++;
 				continue;
 			}
 
+			s.mrvAssigned(cell);
+			s.removeFromUnassigned(cell);
 			if (heuristic(s)) {
+				if (SearchStats.ENABLED)
+					stats.ascend();
 				return true;
-			} else {
-				continue;
 			}
+			s.pushBackToUnassigned(cell);
+			s.mrvUnassigned(cell);
+			stats.backtracks++;
 		}
 		s.board[row][col].val = 0;
-		s.pushBackToUnassigned(cell);
+		s.mrvPushBack(cell);
+		if (SearchStats.ENABLED)
+			stats.ascend();
 		return false;
 	}
 
-	private void randomizeSubSquares(Sudoku s) {
-		Set<Integer> set;
-		int colCount = 0;
-		while (colCount < 3) { // Iterate through 3 cols at a time
-			int rowCount = 0;
-			while (rowCount < 3) { // For those 3 cols, iterate 3 rows
-				//find which numbers are already present and insert into HashSet
-				set = new HashSet<>();
-				set.add(1);
-				set.add(2);
-				set.add(3);
-				set.add(4);
-				set.add(5);
-				set.add(6);
-				set.add(7);
-				set.add(8);
-				set.add(9);
-				for (int row = rowCount * 3; row < rowCount * 3 + 3; row++) {
-					for (int col = colCount * 3; col < colCount * 3 + 3; col++) {
-						// check if number was already present?
-						int val = s.board[row][col].val;
-						if (val == 0) {
-							continue;
-						}
-						set.remove(val);
-					}
-				}
-				for (int row = rowCount * 3; row < rowCount * 3 + 3; row++) {
-					for (int col = colCount * 3; col < colCount * 3 + 3; col++) {
-						// check if number was already present?
-						int val = s.board[row][col].val;
-						if (val == 0) {
-							Iterator <Integer> iterSet = set.iterator();
-							s.board[row][col].val = iterSet.next();
-							iterSet.remove();
-						}
-					}
-				}
-				rowCount++;
-			}
-			colCount++;
-		}
-		return;
-	}
-
-	private int simAnnScoringHeuristic(Sudoku s) {
-		int score = 0;
-		Set<Integer> set;
-
-		//iterate through rows
-		for(int row = 0; row < 9; row++) {
-			set = new HashSet<>();
-			for(int col = 0; col < 9; col++) {
-				int value = s.board[row][col].val;
-				if(value != 0) {
-					set.add(value);
-				}
-			}
-			score = score + (set.size()*(-1));
-		}
-
-		for(int col = 0; col < 9; col++) {
-			set = new HashSet<>();
-			for(int row = 0; row < 9; row++) {
-				int value = s.board[row][col].val;
-				if(value != 0) {
-					set.add(value);
-				}
-			}
-			score = score + (set.size()*(-1));
-		}
-		return score;
-	}
-
-	private void swapWithinRandomSubsquare(Sudoku s) {
-		//Need to make sure to preserve "hardwired" default given value.  Can't switch values that were part of the original puzzle data
-		int max = 2;
-		int min  = 0;
-
-		Random r = new Random();
-		int randSubSquareRow = r.nextInt((max - min) + 1) + min;
-		int randSubSquareCol = r.nextInt((max - min) + 1) + min;
-
-		int colSubSquare = randSubSquareCol*3;
-		int rowSubSquare = randSubSquareRow*3;
-		boolean swapped = false;
-		while(swapped == false) {
-			int randElement1Row = r.nextInt((max - min) + 1) + min;
-			int randElement1Col = r.nextInt((max - min) + 1) + min;
-			int randElement2Row = r.nextInt((max - min) + 1) + min;
-			int randElement2Col = r.nextInt((max - min) + 1) + min;
-			Cell elem1 = s.board[rowSubSquare + randElement1Row][colSubSquare + randElement1Col];
-			Cell elem2 = s.board[rowSubSquare + randElement2Row][colSubSquare + randElement2Col];
-			if(elem1.hardwired == false && elem2.hardwired == false) {
-				int temp = s.board[rowSubSquare + randElement1Row][colSubSquare + randElement1Col].val;
-				s.board[rowSubSquare + randElement1Row][colSubSquare + randElement1Col].val = s.board[rowSubSquare + randElement2Row][colSubSquare + randElement2Col].val;
-				s.board[rowSubSquare + randElement2Row][colSubSquare + randElement2Col].val = temp;
-				swapped = true;
-			}
-		}
-	}
-
 	/* Implement simulated annealing instead of the backtracking algorithm */
 	//https://en.wikipedia.org/wiki/Simulated_annealing
 	//https://arxiv.org/pdf/1203.2295.pdf
 	//http://www.site.uottawa.ca/~lucia/courses/5165-11/a3.pdf
 	public boolean simulatedAnnealing(Sudoku s) {
-		//1. Populate remaining zero-value elements within puzzle with random values while maintaining subblock constraint integrity
-		Sudoku current = s;
-		randomizeSubSquares(current);
-		int currentScore = simAnnScoringHeuristic(current);
-		double t = 0.5;
-		int counter = 0;
-
-		while (counter < 600000) {
-			//Generate neighbor by swapping the elements of random two randomly-generated cells
-			Sudoku neighbor = new Sudoku(current);
-			swapWithinRandomSubsquare(neighbor);
-			int neighborScore = simAnnScoringHeuristic(neighbor);
-			Random random = new Random();
-			if (exp((currentScore - neighborScore) / t) >= random.nextFloat()) {  //EXP AND RANDOM ARE CORRECT???
-				current = neighbor;
-				currentScore = neighborScore;
-			}
-			if (neighborScore == -162) {
-				current = neighbor;
-				currentScore = neighborScore;
-				break;
-			}
-			t = 0.99999 * t;
-			counter++;
-			if(counter == 599999) {
-				counter = 0;
-				t = 0.5;
-			}
-		}
+		// Runs on a primitive copy of the values, the board is only written back once solved
+		Annealer annealer = new Annealer(s.values(), ThreadLocalRandom.current().nextLong());
 
-		if(currentScore == -162) {
-			//System.out.println(current);
-			return true;
+		boolean solved = annealer.anneal(token);
+		stats.nodes += annealer.steps; // every proposed move counts as a node
+		if (!solved) {
+			return false;
 		}
-		return false;
+		s.fillSolution(annealer.values);
+		return true;
 	}
 
 	enum levels {
 		easy, medium, hard
 	};
 
-	public static void seeStats() {
+	/* Every final board goes to one results file, through a single buffer */
+	public static void seeStats() throws IOException {
 
 		SudokuAlgorithms algo = new SudokuAlgorithms();
 
-		for (levels level : levels.values()) {
-
-			for (int number = 1; number <= 5; number++) {
-
-				System.out.print(level.toString() + "" + number + "    ");
-
-				for (int j = 1; j <= 5; j++) {
-					Sudoku s = new Sudoku(level.toString(), number);
-					// System.out.println(s);
-					long startTime, stopTime, elapsedTime;
-					startTime = System.currentTimeMillis();
-
-					switch (j) {
-					case 1:
-						System.out.print(algo.backtracking(s) + " --> ");
-						break;
-					case 2:
-						System.out.print(algo.forwardChecking(s) + " --> ");
-						break;
-					case 3:
-						System.out.print(algo.runAC3backtracking(s) + " --> ");
-						break;
-					case 4:
-						System.out.print(algo.heuristic(s) + " --> ");
-						break;
-					case 5:
-						System.out.print(algo.simulatedAnnealing(s) + " --> ");
-						break;
+		try (ResultWriter results = ResultWriter.toFile(Paths.get("./Results/results.txt"), 0)) {
+			for (levels level : levels.values()) {
+
+				for (int number = 1; number <= 5; number++) {
+
+					System.out.print(level.toString() + "" + number + "    ");
+
+					for (int j = 1; j <= 5; j++) {
+						Sudoku s = new Sudoku(level.toString(), number);
+						// System.out.println(s);
+						SearchStats.Snapshot r = null;
+
+						switch (j) {
+						case 1:
+							r = algo.measure("backtracking", algo::backtracking, s);
+							break;
+						case 2:
+							r = algo.measure("forwardChecking", algo::forwardChecking, s);
+							break;
+						case 3:
+							r = algo.measure("runAC3backtracking", algo::runAC3backtracking, s);
+							break;
+						case 4:
+							r = algo.measure("heuristic", algo::heuristic, s);
+							break;
+						case 5:
+							r = algo.measure("simulatedAnnealing", algo::simulatedAnnealing, s);
+							break;
+						}
+						System.out.print((r.solved == 1) + " --> ");
+						long elapsedTime = r.nanos / 1000000;
+						results.write(level.toString()).write(Integer.toString(number)).write(" ").write(r.algorithm)
+								.write(r.solved == 1 ? " solved\n" : " unsolved\n");
+						results.writeBoard(s);
+
+						System.out.print(elapsedTime + "   ");
 					}
-					stopTime = System.currentTimeMillis();
-					elapsedTime = stopTime - startTime;
-					String filename="./Results/"+level.toString()+""+number+".txt";
-					try{
-					BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-					writer.write(s.printBoard());
-							     
-				    writer.close();}
-					catch(Exception e){System.out.println(e);}
-							
-					System.out.print(elapsedTime + "   ");
+					System.out.println();
 				}
 				System.out.println();
+
 			}
-			System.out.println();
+		}
 
+		// Per-algorithm totals, run with -Dsudoku.stats=true for the full counters
+		for (SearchStats.Snapshot total : SearchStats.totals().values()) {
+			System.out.println(total);
 		}
 
 	}
 
-	public static void main(String ar[]) {
+	public static void main(String ar[]) throws IOException {
 
 		seeStats();
 
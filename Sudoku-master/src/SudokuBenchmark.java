@@ -0,0 +1,220 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/*
+ * Microbenchmark for the solvers in SudokuAlgorithms, laid out the way JMH runs
+ * a benchmark: for every (algorithm, puzzle) pair a number of warm-up iterations
+ * is thrown away, then measurement iterations are timed. Boards are built in an
+ * untimed setup step before every invocation, so only the solve is measured.
+ *
+ * Reports throughput (ops/s), average time (ms/op), search nodes per second
+ * and allocation, the latter read from the per-thread allocation counter the
+ * same way JMH's gc profiler does. For the solvers in MULTI_THREADED, whose
+ * pool threads do the allocating, it is summed over every live thread instead.
+ * Nodes are those counted by the shared SudokuAlgorithms, the parallel solvers
+ * keep their own and show 0.
+ *
+ * Usage: java SudokuBenchmark [-a backtracking,heuristic] [-p easy1,hard3] [-wi 3] [-i 5] [-t 1000]
+ *
+ * The parallel solvers size themselves from the available cores, run with
+ * -XX:ActiveProcessorCount=N to see how they scale.
+ */
+public class SudokuBenchmark {
+
+	static final Map<String, Predicate<Sudoku>> ALGORITHMS = new LinkedHashMap<>();
+
+	static final SudokuAlgorithms ALGO = new SudokuAlgorithms();
+
+	static {
+		ALGORITHMS.put("backtracking", ALGO::backtracking);
+		ALGORITHMS.put("forwardChecking", ALGO::forwardChecking);
+		ALGORITHMS.put("runAC3backtracking", ALGO::runAC3backtracking);
+		ALGORITHMS.put("maintainingArcConsistency", ALGO::maintainingArcConsistency);
+		ALGORITHMS.put("iterativeMAC", ALGO::iterativeMAC);
+		ALGORITHMS.put("heuristic", ALGO::heuristic);
+		ALGORITHMS.put("dancingLinks", ALGO::dancingLinks);
+		ALGORITHMS.put("humanTechniques", ALGO::humanTechniques);
+		ALGORITHMS.put("humanTechniquesEveryNode", s -> ALGO.humanTechniques(s, true));
+		ALGORITHMS.put("simulatedAnnealing", ALGO::simulatedAnnealing);
+		ALGORITHMS.put("parallel", new ParallelSolver()::solve);
+		ALGORITHMS.put("parallelTempering", new ParallelTempering()::solve);
+	}
+
+	static final Set<String> MULTI_THREADED = Set.of("parallel", "parallelTempering");
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationMillis = 1000;
+
+	// Results are folded in here so the JIT cannot drop a solve as dead code
+	private int sink;
+
+	static class Result {
+		long ops;
+		long nanos;
+		long nodes;
+		long allocatedBytes = -1;
+
+		double opsPerSecond() {
+			return nanos == 0 ? 0 : ops * 1e9 / nanos;
+		}
+
+		double nodesPerSecond() {
+			return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+		}
+
+		double millisPerOp() {
+			return ops == 0 ? 0 : nanos / 1e6 / ops;
+		}
+
+		double bytesPerOp() {
+			return ops == 0 || allocatedBytes < 0 ? Double.NaN : (double) allocatedBytes / ops;
+		}
+
+		double allocMBPerSecond() {
+			return nanos == 0 || allocatedBytes < 0 ? Double.NaN : allocatedBytes * 1e9 / nanos / (1 << 20);
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported()) {
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+				return sunBean;
+			}
+		}
+		return null;
+	}
+
+	/* Bytes allocated by the calling thread, or by all of threads when not null */
+	private static long allocatedBytes(long threads[]) {
+		if (THREADS == null)
+			return -1;
+		if (threads == null)
+			return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		long sum = 0;
+		for (long bytes : THREADS.getThreadAllocatedBytes(threads)) {
+			if (bytes > 0) // -1 for a thread that has ended
+				sum += bytes;
+		}
+		return sum;
+	}
+
+	/* Runs one iteration: as many invocations as fit in iterationMillis, at least one */
+	private Result iteration(Predicate<Sudoku> solver, boolean allThreads, String level, int number) {
+		Result r = new Result();
+		long allocated = 0;
+		long deadline = System.nanoTime() + iterationMillis * 1000000;
+
+		// threads started during the iteration are missed, warm-up has started the pools
+		long threads[] = allThreads && THREADS != null ? THREADS.getAllThreadIds() : null;
+		// reading all threads allocates the array it returns, take that out again
+		long idle = allocatedBytes(threads);
+		long overhead = allocatedBytes(threads) - idle;
+
+		do {
+			Sudoku s = new Sudoku(level, number); // setup, not measured
+
+			long nodesBefore = ALGO.stats().nodes;
+			long bytesBefore = allocatedBytes(threads);
+			long start = System.nanoTime();
+			boolean solved = solver.test(s);
+			long stop = System.nanoTime();
+			long bytesAfter = allocatedBytes(threads);
+
+			sink += solved ? 1 : 0;
+			r.ops++;
+			r.nanos += stop - start;
+			r.nodes += ALGO.stats().nodes - nodesBefore;
+			allocated += Math.max(0, bytesAfter - bytesBefore - overhead);
+		} while (System.nanoTime() < deadline);
+
+		if (THREADS != null)
+			r.allocatedBytes = allocated;
+		return r;
+	}
+
+	public Result run(Predicate<Sudoku> solver, boolean allThreads, String level, int number) {
+		for (int i = 0; i < warmupIterations; i++) {
+			iteration(solver, allThreads, level, number);
+		}
+
+		Result total = new Result();
+		total.allocatedBytes = THREADS == null ? -1 : 0;
+		for (int i = 0; i < iterations; i++) {
+			Result r = iteration(solver, allThreads, level, number);
+			total.ops += r.ops;
+			total.nanos += r.nanos;
+			total.nodes += r.nodes;
+			if (THREADS != null)
+				total.allocatedBytes += r.allocatedBytes;
+		}
+		return total;
+	}
+
+	public static void main(String ar[]) {
+
+		SudokuBenchmark bench = new SudokuBenchmark();
+		List<String> algorithms = new ArrayList<>(ALGORITHMS.keySet());
+		List<String> puzzles = new ArrayList<>();
+		for (SudokuAlgorithms.levels level : SudokuAlgorithms.levels.values()) {
+			for (int number = 1; number <= 5; number++) {
+				puzzles.add(level.toString() + number);
+			}
+		}
+
+		for (int i = 0; i + 1 < ar.length; i += 2) {
+			switch (ar[i]) {
+			case "-a":
+				algorithms = Arrays.asList(ar[i + 1].split(","));
+				break;
+			case "-p":
+				puzzles = Arrays.asList(ar[i + 1].split(","));
+				break;
+			case "-wi":
+				bench.warmupIterations = Integer.parseInt(ar[i + 1]);
+				break;
+			case "-i":
+				bench.iterations = Integer.parseInt(ar[i + 1]);
+				break;
+			case "-t":
+				bench.iterationMillis = Long.parseLong(ar[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option " + ar[i]);
+			}
+		}
+
+		System.out.printf("%-26s %-9s %8s %12s %12s %12s %14s %12s%n", "Benchmark", "puzzle", "ops", "ops/s", "ms/op",
+				"nodes/s", "alloc B/op", "alloc MB/s");
+
+		for (String name : algorithms) {
+			Predicate<Sudoku> solver = ALGORITHMS.get(name);
+			if (solver == null)
+				throw new IllegalArgumentException("unknown algorithm " + name);
+
+			for (String puzzle : puzzles) {
+				int split = puzzle.length() - 1;
+				while (split > 0 && Character.isDigit(puzzle.charAt(split - 1)))
+					split--;
+				Result r = bench.run(solver, MULTI_THREADED.contains(name), puzzle.substring(0, split),
+						Integer.parseInt(puzzle.substring(split)));
+				System.out.printf("%-26s %-9s %8d %12.1f %12.4f %12.0f %14.0f %12.1f%n", name, puzzle, r.ops,
+						r.opsPerSecond(), r.millisPerOp(), r.nodesPerSecond(), r.bytesPerOp(), r.allocMBPerSecond());
+			}
+		}
+
+		if (bench.sink < 0)
+			System.out.println(bench.sink);
+	}
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Peer and unit tables of a board, computed once per board size and shared by
+ * every board and solver. Cells are indexed row * size + col.
+ *
+ * The arrays are handed out directly for speed, callers must not modify them.
+ */
+public final class SudokuTopology {
+
+	private static final ConcurrentHashMap<Integer, SudokuTopology> CACHE = new ConcurrentHashMap<>();
+
+	public static final SudokuTopology STANDARD = of(3);
+
+	final int order;      // box side, 3 for a 9x9 board
+	final int size;       // values per unit and units per kind
+	final int cells;
+	final int peerCount;
+
+	final int rowOf[];
+	final int colOf[];
+	final int boxOf[];
+
+	final int rows[][];   // rows[r] = cells of row r, left to right
+	final int cols[][];
+	final int boxes[][];
+	final int units[][];  // rows, then cols, then boxes
+	final int peers[][];  // every other cell sharing a unit, ascending
+
+	private SudokuTopology(int order) {
+		this.order = order;
+		this.size = order * order;
+		this.cells = size * size;
+		this.peerCount = 2 * (size - 1) + (order - 1) * (order - 1);
+
+		rowOf = new int[cells];
+		colOf = new int[cells];
+		boxOf = new int[cells];
+		rows = new int[size][size];
+		cols = new int[size][size];
+		boxes = new int[size][size];
+
+		int boxFill[] = new int[size];
+		for (int cell = 0; cell < cells; cell++) {
+			int row = cell / size, col = cell % size;
+			int box = (row / order) * order + col / order;
+			rowOf[cell] = row;
+			colOf[cell] = col;
+			boxOf[cell] = box;
+			rows[row][col] = cell;
+			cols[col][row] = cell;
+			boxes[box][boxFill[box]++] = cell;
+		}
+
+		units = new int[3 * size][];
+		for (int i = 0; i < size; i++) {
+			units[i] = rows[i];
+			units[size + i] = cols[i];
+			units[2 * size + i] = boxes[i];
+		}
+
+		peers = new int[cells][peerCount];
+		for (int cell = 0; cell < cells; cell++) {
+			int index = 0;
+			for (int other = 0; other < cells; other++) {
+				if (other == cell)
+					continue;
+				if (rowOf[other] == rowOf[cell] || colOf[other] == colOf[cell] || boxOf[other] == boxOf[cell])
+					peers[cell][index++] = other;
+			}
+		}
+	}
+
+	/* Shared topology for a board of order*order values per unit */
+	public static SudokuTopology of(int order) {
+		return CACHE.computeIfAbsent(order, SudokuTopology::new);
+	}
+
+	/* Topology of a board given as cells values in row-major order, 81 for 9x9, 256 for 16x16 */
+	public static SudokuTopology ofCells(int cells) {
+		int order = (int) Math.round(Math.sqrt(Math.sqrt(cells)));
+		if (order < 1 || order * order * order * order != cells)
+			throw new IllegalArgumentException(cells + " cells is not an N^2 x N^2 board");
+		return of(order);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Sparse set of cell indices (row * size + col): dense[0..size) holds the
+ * members, index[cell] the position of cell in dense. Removing a cell swaps
+ * it with the last member and shrinks size, so it stays at dense[size] and
+ * growing size back restores it. Undone in LIFO order that puts every cell
+ * back exactly, which is how the searches backtrack.
+ *
+ * pop() takes the member at the end, get(0) is the next one it would take.
+ */
+final class UnassignedSet {
+
+	private final int dense[];
+	private final int index[];
+	private int size;
+
+	UnassignedSet(int cells) {
+		dense = new int[cells];
+		index = new int[cells];
+	}
+
+	UnassignedSet(UnassignedSet s) {
+		dense = s.dense.clone();
+		index = s.index.clone();
+		size = s.size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int cell) {
+		int i = index[cell];
+		return i < size && dense[i] == cell;
+	}
+
+	/* Adds cell as the next one pop() takes */
+	void add(int cell) {
+		if (contains(cell))
+			return;
+		dense[size] = cell;
+		index[cell] = size++;
+	}
+
+	/* i-th member in pop() order */
+	int get(int i) {
+		return dense[size - 1 - i];
+	}
+
+	int pop() {
+		return dense[--size];
+	}
+
+	boolean remove(int cell) {
+		if (!contains(cell))
+			return false;
+		int i = index[cell], last = dense[--size];
+		dense[i] = last;
+		index[last] = i;
+		dense[size] = cell;
+		index[cell] = size;
+		return true;
+	}
+
+	/* Puts back the last cell popped or removed */
+	void restore(int cell) {
+		if (contains(cell))
+			return;
+		if (dense[size] != cell) { // not LIFO, fetch it from wherever it went
+			int i = index[cell], other = dense[size];
+			dense[i] = other;
+			index[other] = i;
+			dense[size] = cell;
+			index[cell] = size;
+		}
+		size++;
+	}
+
+	void clear() {
+		size = 0;
+	}
+}
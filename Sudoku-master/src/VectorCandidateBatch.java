@@ -0,0 +1,115 @@
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * CandidateBatch sweeps on jdk.incubator.vector: each step works on as many
+ * boards as a vector has short lanes (16 with AVX2, 32 with AVX-512).
+ *
+ * Compile and run with --add-modules jdk.incubator.vector; without the module
+ * this class fails to load and CandidateBatch.create() falls back to
+ * ScalarCandidateBatch.
+ */
+class VectorCandidateBatch extends CandidateBatch {
+
+	static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+	VectorCandidateBatch(int boards) {
+		super((boards + SPECIES.length() - 1) / SPECIES.length() * SPECIES.length());
+	}
+
+	@Override
+	boolean nakedSingles() {
+		boolean changed = false;
+		for (int cell = 0; cell < CELLS; cell++) {
+			int row = TOPOLOGY.rowOf[cell] * lanes, col = TOPOLOGY.colOf[cell] * lanes,
+					box = TOPOLOGY.boxOf[cell] * lanes, at = cell * lanes;
+
+			for (int b = 0; b < lanes; b += SPECIES.length()) {
+				ShortVector value = ShortVector.fromArray(SPECIES, bits, at + b);
+				VectorMask<Short> blank = value.eq((short) 0);
+				if (!blank.anyTrue())
+					continue;
+
+				ShortVector r = ShortVector.fromArray(SPECIES, rows, row + b);
+				ShortVector c = ShortVector.fromArray(SPECIES, cols, col + b);
+				ShortVector x = ShortVector.fromArray(SPECIES, boxes, box + b);
+				ShortVector candidates = r.or(c).or(x).not().and(ALL);
+
+				VectorMask<Short> wiped = candidates.eq((short) 0).and(blank);
+				if (wiped.anyTrue())
+					ShortVector.fromArray(SPECIES, dead, b).blend((short) -1, wiped).intoArray(dead, b);
+
+				// a single bit: v & (v - 1) == 0
+				VectorMask<Short> single = candidates.and(candidates.sub((short) 1)).eq((short) 0)
+						.and(candidates.compare(VectorOperators.NE, (short) 0)).and(blank);
+				if (!single.anyTrue())
+					continue;
+
+				ShortVector placed = ShortVector.zero(SPECIES).blend(candidates, single);
+				r.or(placed).intoArray(rows, row + b);
+				c.or(placed).intoArray(cols, col + b);
+				x.or(placed).intoArray(boxes, box + b);
+				value.or(placed).intoArray(bits, at + b);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private ShortVector candidates(int cell, int b) {
+		ShortVector value = ShortVector.fromArray(SPECIES, bits, cell * lanes + b);
+		ShortVector r = ShortVector.fromArray(SPECIES, rows, TOPOLOGY.rowOf[cell] * lanes + b);
+		ShortVector c = ShortVector.fromArray(SPECIES, cols, TOPOLOGY.colOf[cell] * lanes + b);
+		ShortVector x = ShortVector.fromArray(SPECIES, boxes, TOPOLOGY.boxOf[cell] * lanes + b);
+		return r.or(c).or(x).not().and(ALL).blend((short) 0, value.compare(VectorOperators.NE, (short) 0));
+	}
+
+	@Override
+	boolean hiddenSingles() {
+		boolean changed = false;
+		for (int unit[] : TOPOLOGY.units) {
+			for (int b = 0; b < lanes; b += SPECIES.length()) {
+				ShortVector once = ShortVector.zero(SPECIES), twice = once, placed = once;
+				for (int cell : unit) {
+					ShortVector candidates = candidates(cell, b);
+					twice = twice.or(once.and(candidates));
+					once = once.or(candidates);
+					placed = placed.or(ShortVector.fromArray(SPECIES, bits, cell * lanes + b));
+				}
+				VectorMask<Short> missing = once.or(placed).compare(VectorOperators.NE, ALL);
+				if (missing.anyTrue())
+					ShortVector.fromArray(SPECIES, dead, b).blend((short) -1, missing).intoArray(dead, b);
+
+				ShortVector hidden = once.and(twice.not());
+				if (!hidden.compare(VectorOperators.NE, (short) 0).anyTrue())
+					continue;
+
+				for (int cell : unit) {
+					ShortVector h = candidates(cell, b).and(hidden);
+					VectorMask<Short> found = h.compare(VectorOperators.NE, (short) 0);
+					if (!found.anyTrue())
+						continue;
+
+					VectorMask<Short> clash = h.and(h.sub((short) 1)).compare(VectorOperators.NE, (short) 0);
+					if (clash.anyTrue()) {
+						ShortVector.fromArray(SPECIES, dead, b).blend((short) -1, clash).intoArray(dead, b);
+						h = h.blend((short) 0, clash);
+						if (!h.compare(VectorOperators.NE, (short) 0).anyTrue())
+							continue;
+					}
+
+					int row = TOPOLOGY.rowOf[cell] * lanes + b, col = TOPOLOGY.colOf[cell] * lanes + b,
+							box = TOPOLOGY.boxOf[cell] * lanes + b, at = cell * lanes + b;
+					ShortVector.fromArray(SPECIES, rows, row).or(h).intoArray(rows, row);
+					ShortVector.fromArray(SPECIES, cols, col).or(h).intoArray(cols, col);
+					ShortVector.fromArray(SPECIES, boxes, box).or(h).intoArray(boxes, box);
+					ShortVector.fromArray(SPECIES, bits, at).or(h).intoArray(bits, at);
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+}